@@ -0,0 +1,120 @@
+package straitjacket;
+
+/**
+ * The constraints of a SolverState that still have to be looked at. A constraint that is entailed,
+ * i.e. holds for every combination of the values left, is retired for the subtree below the current
+ * node: the propagation and the satisfaction check skip it until backtracking brings it back.
+ * The positions of the constraints in the model are kept as a sparse set, the active ones first.
+ * Retiring swaps a constraint behind the active ones, so only the number of active constraints
+ * has to be put on the trail.
+ */
+public class ActiveConstraints {
+
+	/**
+	 * the positions of all constraints, the first size of them are active
+	 */
+	private final int[] positions;
+
+	/**
+	 * for every position its index in positions
+	 */
+	private final int[] indices;
+
+	/**
+	 * the number of active constraints
+	 */
+	private int size;
+
+	/**
+	 * the trail the retirements are recorded on
+	 */
+	private final Trail trail;
+
+	/**
+	 * Creates the set with all constraints active
+	 * @param count the number of constraints of the model
+	 * @param trail the trail of the SolverState
+	 */
+	ActiveConstraints(int count, Trail trail) {
+		this.positions = new int[count];
+		this.indices = new int[count];
+		this.size = count;
+		this.trail = trail;
+		for (int i = 0; i < count; i++) positions[i] = indices[i] = i;
+	}
+
+	/**
+	 * Checks whether the constraint at the given position is still active
+	 * @param position the position of the constraint in the model
+	 * @return false if the constraint has been retired
+	 */
+	public boolean isActive(int position) {
+		return indices[position] < size;
+	}
+
+	/**
+	 * Returns the number of active constraints
+	 * @return the number of active constraints
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the position of an active constraint
+	 * @param i the index of the active constraint, between 0 and size()
+	 * @return the position of the constraint in the model
+	 */
+	public int get(int i) {
+		return positions[i];
+	}
+
+	/**
+	 * Retires the constraint at the given position until the open level of the trail is backtracked.
+	 * Whether a constraint is entailed may depend on the tied values, which are not on the trail.
+	 * So nothing is retired while no level is open, it would be for good.
+	 * @param position the position of an entailed constraint
+	 * @return true if the constraint has been retired
+	 */
+	boolean retire(int position) {
+		if (trail.getLevel() == 0 || !isActive(position)) return false;
+		trail.record(this, size);
+		moveBehindActive(position);
+		return true;
+	}
+
+	/**
+	 * Retires the constraint at the given position for the whole search. The caller has to make sure
+	 * the constraint holds for all values left without any variable tied, as it is done by the presolve.
+	 * @param position the position of a constraint that holds for every value of the domains
+	 * @throws IllegalStateException if a level of the trail is open
+	 */
+	void retireForGood(int position) {
+		if (trail.getLevel() != 0) throw new IllegalStateException("Constraints can only be retired for good at the root.");
+		if (isActive(position)) moveBehindActive(position);
+	}
+
+	/**
+	 * Swaps an active constraint with the last active one and makes it inactive
+	 * @param position the position of an active constraint
+	 */
+	private void moveBehindActive(int position) {
+		int index = indices[position];
+		int last = positions[size-1];
+		positions[index] = last;
+		indices[last] = index;
+		positions[size-1] = position;
+		indices[position] = size-1;
+		size--;
+	}
+
+	/**
+	 * Brings back the constraints retired since the number of active constraints was the given one.
+	 * The retired constraints are still in place behind the active ones, so only the number changes.
+	 * The trail calls this on backtracking, the propagation when it runs into an empty domain.
+	 * @param size the number of active constraints to restore
+	 */
+	void restore(int size) {
+		this.size = size;
+	}
+}
@@ -1,120 +1,226 @@
-package straitjacket;
-
-import java.util.Collection;
-import java.util.Iterator;
-
-import straitjacket.util.OrderedHashSet;
-
-
-
-//import sun.security.x509.IssuerAlternativeNameExtension;
-
-/**
- * A collection of methodes for forward checks, that means by checking ArcConsistency and NodeConsistency  
- * we remove value for the Variable Domains to downsize the backtrackingtree. 
- */
-public class ArcConsistency {
-
-	//TODO die Klasse sollte ac3 heissen und diese methode ArcConstistency ... 
-	// Sorry aber das ist totaler Quatsch...
-	
-	/**
-	 * AC3 algorithm to establish arc consistency. The method processes all constraints with
-	 * two-digit constraints. If you provide a variable list, only those constraints are processed
-	 * that contain the variable. This could make sense when doing forward checks in your backtracking,
-	 * where you just want to recheck the variables you just have tied to a distinct value.
-	 * To point out is here that tied (fixed) variables are considered to be constants.
-	 * So two-digit constraints means that there are two untied variables left.
-	 * @param cs the ConstraintSet to check
-	 * @param initialVars optional variable list for the initial worklist
-	 * @return FALSE if one constraint is dissatisfied, DELAY otherwise
-	 * 		   (this method won't ever return TRUE; this should be checked in backtracking)
-	 */
-	public static Constraint.satisfaction ac3(ConstraintSet cs, Variable ... initialVars) {
-		// first construct the list of all binary constraints
-		OrderedHashSet<Constraint> worklist = new OrderedHashSet<Constraint>();
-
-		// build up the initial worklist
-		if ( initialVars != null && initialVars.length > 0 ) {
-			// if called with a list of variables, only append
-			// constraints that contain this variable and one other
-            for (Variable initialVar : initialVars) worklist.addAll(cs.getConstraintsByVariables().get(initialVar));
-		}
-		else {
-			// if called without a variable list, add all constraints with two variables
-			worklist.addAll(cs);
-		}
-		
-		// the algorithm
-		while ( ! worklist.isEmpty() ) {			
-			Constraint c = worklist.remove(0);
-			// creating arcConsistency for this Constraint
-			Collection<Variable> chvars=c.makeArcConsistent();
-			
-			// if some vars changed we have to check the other again
-			if ( chvars!= null && chvars.size()>0 ) {
-                for (Variable chvar : chvars) {
-                    // has a domain tun out of values? so we failt (or succced by eleminating a subtree)
-                    if (chvar.getDomain().getSet().cardinality() == 0) return Constraint.satisfaction.FALSE;
-                    // enqueue all two-digit constraints where cVar is involved except
-                    // the constraint that has been processed above
-                    Collection<Constraint> toBeAdded = cs.getConstraintsByVariables().get(chvar);
-                    toBeAdded.remove(c);
-                    worklist.addAll(toBeAdded);
-                }
-			}
-		}//end of while
-		
-		return Constraint.satisfaction.DELAY;
-	}
-	
-	/**
-	 * Algorithm to establish node consistency. It processed every one-digit constraint.
-	 * To point out is here that tied (fixed) variables are considered to be constants,
-	 * So constrain.getNumberOfVariables() could be bigger than 1, but thereby some 
-	 * variables are fixed we will check these constraints here. 
-	 * 
-	 * @param cs the ConstraintSet
-	 * @param initialVars optional variable list for the initial worklist
-	 * @return FALSE if one constraint is dissatisfied, DELAY otherwise
-	 * 		   (this method won't ever return TRUE; this should be checked in backtracking)
-	 */
-	public static Constraint.satisfaction nodeConsistency(ConstraintSet cs, Variable ... initialVars) {
-		// first construct the list of all unary constraints		
-		OrderedHashSet<Constraint> unaryConstraints = new OrderedHashSet<Constraint>();
-		
-		if ( initialVars != null && initialVars.length > 0 ) {
-			for (Constraint c : cs) {
-				if (c.getNumberOfFreeVariables() == 1)
-                    for (Variable initialVar : initialVars) if (c.containsVariable(initialVar)) unaryConstraints.add(c);
-			}
-		}
-		else	for (Constraint c : cs) if (c.getNumberOfFreeVariables() == 1) unaryConstraints.add(c);
-		
-		// now enfore node consistency
-		for (Constraint c : unaryConstraints) {
-			if (!c.makeNodeConsistent()) return Constraint.satisfaction.FALSE; //we found a constrain we cant fulfil anymore
-		}
-		// if we reach this point every constrain was at least satisfied for a possible value of the variables
-		return Constraint.satisfaction.DELAY;
-	}
-	
-	//TODO unused
-	/**
-	 * This method checks only if the Constraints with only fixed variables are fulfilled,
-	 * so what we do here is to check if we did a mistake so far.
-	 * @param cs the ConstraintSet
-	 * @return FALSE if one constraint is dissatisfied, true if all Constraints are satisfied
-	 */
-	public static boolean holdsForFixed(ConstraintSet cs) {
-		
-		for (Constraint c : cs)
-			if (c.getNumberOfFreeVariables() == 0)
-				if (c.holds()==Constraint.satisfaction.FALSE) return false;
-		
-		return true;
-	}
-	
-	
-	
-}
+package straitjacket;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import straitjacket.util.OrderedHashSet;
+
+
+
+//import sun.security.x509.IssuerAlternativeNameExtension;
+
+/**
+ * A collection of methodes for forward checks, that means by checking ArcConsistency and NodeConsistency  
+ * we remove value for the Variable Domains to downsize the backtrackingtree. 
+ */
+public class ArcConsistency {
+
+	//TODO die Klasse sollte ac3 heissen und diese methode ArcConstistency ... 
+	// Sorry aber das ist totaler Quatsch...
+	
+	/**
+	 * AC3 algorithm to establish arc consistency. The method processes all constraints with
+	 * two-digit constraints. If you provide a variable list, only those constraints are processed
+	 * that contain the variable. This could make sense when doing forward checks in your backtracking,
+	 * where you just want to recheck the variables you just have tied to a distinct value.
+	 * To point out is here that tied (fixed) variables are considered to be constants.
+	 * So two-digit constraints means that there are two untied variables left.
+	 * The worklist is the PropagationQueue of the state, cheap constraints are run to their 
+	 * fixpoint before the expensive ones.
+	 * A constraint that is entailed after its propagation is retired from the ActiveConstraints of
+	 * the state until the open level of the trail is backtracked, so the tied variables are expected
+	 * to stay tied as long as that level is open.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param initialVars optional variable list for the initial worklist
+	 * @return FALSE if one constraint is dissatisfied, DELAY otherwise
+	 * 		   (this method won't ever return TRUE; this should be checked in backtracking)
+	 */
+	public static Constraint.satisfaction ac3(SolverState state, Variable ... initialVars) {
+		try {
+			return propagate(state, initialVars);
+		} finally {
+			state.getPropagationQueue().clear();
+		}
+	}
+	
+	/**
+	 * The AC3 algorithm itself, the worklist is cleared by the caller
+	 * @param state the state of the search
+	 * @param initialVars optional variable list for the initial worklist
+	 * @return FALSE if one constraint is dissatisfied, DELAY otherwise
+	 */
+	private static Constraint.satisfaction propagate(SolverState state, Variable ... initialVars) {
+		// first construct the list of all binary constraints
+		PropagationQueue worklist = state.getPropagationQueue();
+		ActiveConstraints active = state.getActiveConstraints();
+		int activeBefore = active.size();
+		CompiledModel model = state.getModel();
+		int[] incidence = model.getIncidence();
+
+		// build up the initial worklist
+		if ( initialVars != null && initialVars.length > 0 ) {
+			// if called with a list of variables, only append
+			// constraints that contain this variable and one other
+            for (Variable initialVar : initialVars) {
+            	int end = model.getIncidenceEnd(initialVar);
+            	for (int k = model.getIncidenceStart(initialVar); k < end; k++) {
+            		if (active.isActive(incidence[k])) worklist.add(incidence[k]);
+            	}
+            }
+		}
+		else {
+			// if called without a variable list, add all constraints with two variables
+			for (int i = 0; i < active.size(); i++) worklist.add(active.get(i));
+		}
+		
+		// the algorithm
+		while ( ! worklist.isEmpty() ) {			
+			int position = worklist.poll();
+			Constraint c = model.getConstraint(position);
+			// creating arcConsistency for this Constraint
+			Collection<Variable> chvars=c.makeArcConsistent(state);
+			
+			// if some vars changed we have to check the other again
+			if ( chvars!= null && chvars.size()>0 ) {
+                for (Variable chvar : chvars) {
+                    // has a domain tun out of values? so we failt (or succced by eleminating a subtree)
+                    if (state.getDomain(chvar).isEmpty()) {
+                    	// the constraints retired on the way are vacuously entailed now, but the
+                    	// satisfaction check still has to see the empty domain through them
+                    	active.restore(activeBefore);
+                    	return Constraint.satisfaction.FALSE;
+                    }
+                    // enqueue all two-digit constraints where cVar is involved except
+                    // the constraint that has been processed above, the adjacency
+                    // of the compiled model is only read, never changed
+                    int end = model.getIncidenceEnd(chvar);
+                    for (int k = model.getIncidenceStart(chvar); k < end; k++) {
+                    	if (incidence[k] != position && active.isActive(incidence[k])) worklist.add(incidence[k]);
+                    }
+                }
+			}
+			
+			// a constraint that holds for all values left has nothing to do in this subtree anymore
+			if (c.isEntailed(state)) active.retire(position);
+		}//end of while
+		
+		return Constraint.satisfaction.DELAY;
+	}
+	
+	/**
+	 * Algorithm to establish node consistency. It processed every one-digit constraint.
+	 * To point out is here that tied (fixed) variables are considered to be constants,
+	 * So constrain.getNumberOfVariables() could be bigger than 1, but thereby some 
+	 * variables are fixed we will check these constraints here. 
+	 * 
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param initialVars optional variable list for the initial worklist
+	 * @return FALSE if one constraint is dissatisfied, DELAY otherwise
+	 * 		   (this method won't ever return TRUE; this should be checked in backtracking)
+	 */
+	public static Constraint.satisfaction nodeConsistency(SolverState state, Variable ... initialVars) {
+		// first construct the list of all unary constraints		
+		OrderedHashSet<Constraint> unaryConstraints = new OrderedHashSet<Constraint>();
+		CompiledModel model = state.getModel();
+		int[] incidence = model.getIncidence();
+		
+		if ( initialVars != null && initialVars.length > 0 ) {
+            for (Variable initialVar : initialVars) {
+            	int end = model.getIncidenceEnd(initialVar);
+            	for (int k = model.getIncidenceStart(initialVar); k < end; k++) {
+            		Constraint c = model.getConstraint(incidence[k]);
+            		if (c.getNumberOfFreeVariables(state) == 1) unaryConstraints.add(c);
+            	}
+            }
+		}
+		else	for (int i = 0; i < model.getNumberOfConstraints(); i++) {
+			Constraint c = model.getConstraint(i);
+			if (c.getNumberOfFreeVariables(state) == 1) unaryConstraints.add(c);
+		}
+		
+		// now enfore node consistency
+		for (Constraint c : unaryConstraints) {
+			if (!c.makeNodeConsistent(state)) return Constraint.satisfaction.FALSE; //we found a constrain we cant fulfil anymore
+		}
+		// if we reach this point every constrain was at least satisfied for a possible value of the variables
+		return Constraint.satisfaction.DELAY;
+	}
+	
+	/**
+	 * Presolves the constraints that are unary at the root of the search, i.e. all but one of their 
+	 * variables have a single value left. Their makeNodeConsistent(SolverState) changes the domain of the
+	 * remaining variable directly where it can, like the bounds of a linear constraint or the single 
+	 * forbidden value of an inequation. Afterwards the constraint holds for every value left, so it is
+	 * retired for the whole search and is neither propagated nor checked anymore. A constraint with all 
+	 * variables fixed is only checked. Fixing a domain can make other constraints unary, so the constraints
+	 * are looked at again until no further domain gets fixed.
+	 * Retiring a constraint for good is only possible at the root, so nothing is done if a level of the
+	 * trail is open or a variable is tied, like in a state an earlier search has stopped at a solution in.
+	 * @param state the state of the search
+	 * @return FALSE if a constraint can't be satisfied, DELAY otherwise
+	 */
+	public static Constraint.satisfaction presolve(SolverState state) {
+		CompiledModel model = state.getModel();
+		if (state.getTrail().getLevel() != 0) return Constraint.satisfaction.DELAY;
+		for (int v = 0; v < model.getNumberOfVariables(); v++) {
+			if (state.isTiedToValue(model.getVariable(v))) return Constraint.satisfaction.DELAY;
+		}
+		ActiveConstraints active = state.getActiveConstraints();
+		boolean fixedAnother = true;
+		while (fixedAnother) {
+			fixedAnother = false;
+			for (int i = 0; i < model.getNumberOfConstraints(); i++) {
+				if (!active.isActive(i)) continue;
+				Variable[] scope = model.getScope(i);
+				Variable free = null;
+				int unfixed = 0;
+				for (Variable var : scope) {
+					if (state.getDomain(var).size() != 1) {
+						free = var;
+						unfixed++;
+					}
+				}
+				if (unfixed > 1) continue;
+				
+				Constraint c = model.getConstraint(i);
+				if (free == null) {
+					Constraint.satisfaction sat = c.holds(state);
+					if (sat == Constraint.satisfaction.FALSE) return sat;
+					if (sat == Constraint.satisfaction.DELAY) continue;
+				} else {
+					// the fixed variables are constants for the constraint
+					for (Variable var : scope) {
+						if (var != free) state.tieProbe(var, state.getDomain(var).min());
+					}
+					boolean satisfiable = c.makeNodeConsistent(state);
+					for (Variable var : scope) state.untieProbe(var);
+					if (!satisfiable) return Constraint.satisfaction.FALSE;
+					if (state.getDomain(free).size() == 1) fixedAnother = true;
+				}
+				active.retireForGood(i);
+			}
+		}
+		return Constraint.satisfaction.DELAY;
+	}
+	
+	//TODO unused
+	/**
+	 * This method checks only if the Constraints with only fixed variables are fulfilled,
+	 * so what we do here is to check if we did a mistake so far.
+	 * @param state the state of the search
+	 * @return FALSE if one constraint is dissatisfied, true if all Constraints are satisfied
+	 */
+	public static boolean holdsForFixed(SolverState state) {
+		
+		CompiledModel model = state.getModel();
+		for (int i = 0; i < model.getNumberOfConstraints(); i++) {
+			Constraint c = model.getConstraint(i);
+			if (c.getNumberOfFreeVariables(state) == 0)
+				if (c.holds(state)==Constraint.satisfaction.FALSE) return false;
+		}
+		return true;
+	}
+	
+	
+	
+}
@@ -0,0 +1,246 @@
+package straitjacket;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable snapshot of the structure of a ConstraintSet, made by ConstraintSet.compile().
+ * The constraints are kept in a fixed order (by their id), the used variables in the order
+ * of their ids, and for every variable the constraints it is involved in are stored in
+ * compressed sparse row form: the positions of the constraints of the variable with id v
+ * are incidence[incidenceOffsets[v]] up to (excluding) incidence[incidenceOffsets[v+1]].
+ * Binary constraints over small domains also get their supports compiled into a SupportTable,
+ * the first time a revision asks for it and as long as the tables of the model stay within 
+ * SupportTable.MAX_MODEL_WORDS. Apart from that, the model is immutable and can be shared by 
+ * the states of concurrent searches. Iterating over the model is deterministic and does not 
+ * allocate anything. The arrays returned by the getters must not be modified.
+ */
+public class CompiledModel {
+	
+	/**
+	 * the constraints, ordered by their id
+	 */
+	private final Constraint[] constraints;
+	
+	/**
+	 * for every constraint its variables, scopes[i] belongs to constraints[i]
+	 */
+	private final Variable[][] scopes;
+	
+	/**
+	 * the variables involved in at least one constraint, ordered by their id
+	 */
+	private final Variable[] variables;
+	
+	/**
+	 * for every variable id where its constraints start in incidence, one more entry for the end
+	 */
+	private final int[] incidenceOffsets;
+	
+	/**
+	 * the positions of the constraints of all variables
+	 */
+	private final int[] incidence;
+	
+	/**
+	 * for every constraint id the position of the constraint, -1 if it is not part of the model
+	 */
+	private final int[] positionsById;
+	
+	/**
+	 * for every constraint its compiled supports, null if they have not been asked for yet
+	 * and SupportTable.NONE if the constraint has no table
+	 */
+	private final AtomicReferenceArray<SupportTable> supportTables;
+	
+	/**
+	 * the number of words the support tables of this model may still take
+	 */
+	private final AtomicLong supportTableWords = new AtomicLong(SupportTable.MAX_MODEL_WORDS);
+	
+	/**
+	 * Freezes the given ConstraintSet
+	 * @param cs the ConstraintSet to compile
+	 */
+	CompiledModel(ConstraintSet cs) {
+		int constraintIds = cs.getNumberOfConstraintIds();
+		int variableIds = cs.getNumberOfVariableIds();
+		
+		// the constraints by id
+		positionsById = new int[constraintIds];
+		int count = 0;
+		for (int id = 0; id < constraintIds; id++) {
+			Constraint c = cs.getConstraintById(id);
+			positionsById[id] = c == null ? -1 : count++;
+		}
+		constraints = new Constraint[count];
+		scopes = new Variable[count][];
+		int[] degrees = new int[variableIds];
+		for (int id = 0; id < constraintIds; id++) {
+			if (positionsById[id] < 0) continue;
+			Constraint c = cs.getConstraintById(id);
+			Collection<Variable> vars = c.getVariables();
+			constraints[positionsById[id]] = c;
+			scopes[positionsById[id]] = vars.toArray(new Variable[vars.size()]);
+			for (Variable v : vars) degrees[v.getId()]++;
+		}
+		
+		// the used variables and the offsets of their constraints
+		int used = 0;
+		incidenceOffsets = new int[variableIds + 1];
+		for (int v = 0; v < variableIds; v++) {
+			if (degrees[v] > 0) used++;
+			incidenceOffsets[v+1] = incidenceOffsets[v] + degrees[v];
+		}
+		variables = new Variable[used];
+		used = 0;
+		for (int v = 0; v < variableIds; v++) {
+			if (degrees[v] > 0) variables[used++] = cs.getVariableById(v);
+		}
+		
+		// fill in the constraints of every variable, in the order of the constraints
+		incidence = new int[incidenceOffsets[variableIds]];
+		int[] next = new int[variableIds];
+		System.arraycopy(incidenceOffsets, 0, next, 0, variableIds);
+		for (int i = 0; i < constraints.length; i++) {
+			for (Variable v : scopes[i]) incidence[next[v.getId()]++] = i;
+		}
+		
+		// the bit masks of the binary constraints are compiled when they are needed
+		supportTables = new AtomicReferenceArray<SupportTable>(constraints.length);
+	}
+	
+	/**
+	 * Returns the number of constraints of the model
+	 * @return the number of constraints
+	 */
+	public int getNumberOfConstraints() {
+		return constraints.length;
+	}
+	
+	/**
+	 * Returns the constraint at the given position
+	 * @param i the position of the constraint
+	 * @return the constraint
+	 */
+	public Constraint getConstraint(int i) {
+		return constraints[i];
+	}
+	
+	/**
+	 * Returns the position of the given constraint in this model
+	 * @param c a constraint
+	 * @return the position or -1 if the constraint is not part of the model
+	 */
+	public int getPosition(Constraint c) {
+		int id = c.getId();
+		if (id < 0 || id >= positionsById.length) return -1;
+		int position = positionsById[id];
+		return position >= 0 && constraints[position] == c ? position : -1;
+	}
+	
+	/**
+	 * Returns the compiled supports of the given constraint, compiling them on the first call.
+	 * Only binary constraints which decide pairs of values on their own (see 
+	 * Constraint.holdsForPair(Variable, int, Variable, int)) get a table, and only as long as
+	 * the domains are small and the tables of the model fit into SupportTable.MAX_MODEL_WORDS.
+	 * @param c a constraint
+	 * @return the support table or null if the constraint has none or is not part of the model
+	 */
+	public SupportTable getSupportTable(Constraint c) {
+		int position = getPosition(c);
+		if (position < 0) return null;
+		SupportTable table = supportTables.get(position);
+		if (table == null) {
+			if (scopes[position].length == 2) {
+				table = SupportTable.compile(constraints[position], scopes[position][0], scopes[position][1], supportTableWords);
+			}
+			if (table == null) table = SupportTable.NONE;
+			// another search may have compiled the table meanwhile, then its table is used by all
+			if (!supportTables.compareAndSet(position, null, table)) {
+				supportTableWords.addAndGet(table.getWords());
+				table = supportTables.get(position);
+			}
+		}
+		return table == SupportTable.NONE ? null : table;
+	}
+	
+	/**
+	 * Returns the variables of the constraint at the given position
+	 * @param i the position of the constraint
+	 * @return the variables of the constraint, the array must not be modified
+	 */
+	public Variable[] getScope(int i) {
+		return scopes[i];
+	}
+	
+	/**
+	 * Returns the number of variables involved in at least one constraint
+	 * @return the number of used variables
+	 */
+	public int getNumberOfVariables() {
+		return variables.length;
+	}
+	
+	/**
+	 * Returns a variable involved in at least one constraint
+	 * @param i the index of the variable, between 0 and getNumberOfVariables() 
+	 * @return the variable
+	 */
+	public Variable getVariable(int i) {
+		return variables[i];
+	}
+	
+	/**
+	 * Returns where the constraints of the given variable start in the incidence array
+	 * @param v a variable of the ConstraintSet
+	 * @return the index of the first constraint of the variable in getIncidence()
+	 */
+	public int getIncidenceStart(Variable v) {
+		return incidenceOffsets[v.getId()];
+	}
+	
+	/**
+	 * Returns where the constraints of the given variable end in the incidence array
+	 * @param v a variable of the ConstraintSet
+	 * @return the index after the last constraint of the variable in getIncidence()
+	 */
+	public int getIncidenceEnd(Variable v) {
+		return incidenceOffsets[v.getId() + 1];
+	}
+	
+	/**
+	 * Returns the positions of the constraints of all variables, see getIncidenceStart(Variable)
+	 * @return the incidence array, which must not be modified
+	 */
+	public int[] getIncidence() {
+		return incidence;
+	}
+	
+	/**
+	 * Returns the number of constraints the given variable is involved in
+	 * @param v a variable of the ConstraintSet
+	 * @return the number of constraints of the variable
+	 */
+	public int getDegree(Variable v) {
+		return incidenceOffsets[v.getId() + 1] - incidenceOffsets[v.getId()];
+	}
+	
+	/**
+	 * check whether the model is satified in the given state, see SolverState.isSatisfied()
+	 * @param state the state of the search
+	 * @return Constraint.satisfaction.TRUE if all Constraints are satisfied, FALSE if a Constraint failed, DELAY if no further statement can be made
+	 */
+	public Constraint.satisfaction isSatisfied(SolverState state) {
+		Constraint.satisfaction sat = Constraint.satisfaction.TRUE;
+		// the retired constraints are entailed, so they hold anyway
+		ActiveConstraints active = state.getActiveConstraints();
+		for (int i = 0; i < active.size(); i++) {
+			Constraint.satisfaction cSatisfied = constraints[active.get(i)].holds(state);
+			if (cSatisfied == Constraint.satisfaction.FALSE) return Constraint.satisfaction.FALSE;
+			if (cSatisfied == Constraint.satisfaction.DELAY) sat = Constraint.satisfaction.DELAY;
+		}
+		return sat;
+	}
+}
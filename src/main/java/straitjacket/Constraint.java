@@ -1,230 +1,341 @@
-package straitjacket;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-
-
-/**
- * Generell representation for constraints
- */
-public abstract class Constraint {
-	
-	/**
-	 * A counter of the autotitling, so that the constraintnames are unique
-	 */
-	static private int counter = 0;  
-	
-	/** Enumeration for the state of a constraint. It may be satisfied (TRUE), dissatisfied (FALSE)
-	 * or not determinable (DELAYED).
-	 */
-	public enum satisfaction {TRUE, FALSE, DELAY}
-
-    /**
-	 * A name for our Constraint
-	 */
-	protected String name;
-	
-	/**
-	 * A list of the involved variables
-	 */
-	protected HashSet<Variable> variables;
-	
-	/**
-	 * Default-Constructor that will generate a name with an
-	 * underscore and an auto-incremented value like "_42"
-	 */
-    protected Constraint() {
-		this.name = "_" + counter++;
-	}
-	
-	/** General constructor for a constraint object, that'll 
-	 * associate the constraint with the given name. 
-	 * @param name a name for the Constraint 
-	 */
-    protected Constraint(String name) {
-		this.name = name;
-	}
-	
-	/**
-	 * Gets the name attribute
-	 * @return the name of the Constraint
-	 */
-    protected String getName() {
-		return this.name;
-	}
-	
-	/**
-	 * Change the name attribute. You may also set this name
-	 * at construction time.
-	 * @param name the new name for the Constraint
-	 */
-    protected void setName(String name) {
-		this.name = name;
-	}
-	
-	/**
-	 * Returns a string representation of the Constraint
-	 * 
-	 * @return a string representation of the Constraint
-	 */	
-	public String toString() {
-		return this.name;
-	}
-	
-	/**
-	 * Returns the number of involved variables
-	 * @return number of involved variables
-	 */
-	public int getNumberOfVariables() {
-		return variables.size();
-	}
-	
-	/**
-	 * Returns the number of notied involved variables
-	 * @return number of notied involved variables
-	 */
-	public int getNumberOfFreeVariables() {
-		return getFreeVariables().size();
-	}
-
-	
-	/**
-	 * 
-	 * Returns all involved untied variables
-	 * @return all involved untied variables as Collection
-	 */
-    protected Collection<Variable> getFreeVariables() {
-		ArrayList<Variable> freevars=new ArrayList<Variable> ();
-        for (Variable variable : variables) {
-            if (!variable.isTiedToValue()) freevars.add(variable);
-        }
-		return freevars;
-	}
-	
-	/**
-	 * 
-	 * Returns all involved variables
-	 * @return all involved variables as Collection
-	 */
-	public Collection<Variable> getVariables() {
-		return variables;
-	}
-	
-	/**
-	 * Checks whether a given variable is involved in the constraint.
-	 * The check is done on the reference, not on the name of the variable!
-	 * @param variable the variable to check
-	 * @return true, if the variable is involved in the constraint
-	 */
-	public boolean containsVariable(Variable variable) {
-		return variables.contains(variable);
-	}
-	
-	/**
-	 * Decides whether the constraint is still satified with respect to the 
-	 * current domains of the involved variables. This default method just returns
-	 * FALSE. You might want to override this behaviour.
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	public satisfaction holds() {
-		return satisfaction.FALSE;
-	}
-	
-	/**
-	 * Decides whether the constraint is still satified with respect to the 
-	 * given concrete values of the variables. Take care to provide the 
-	 * correct variables in the parameter (they're compared by reference, not by name)
-	 * @param valuations a HashMap with variable assignments. 
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	public satisfaction holdsFor(HashMap<Variable,Integer> valuations) {
-		return satisfaction.FALSE;
-	}	
-	
-	/**
-            * Makes this constraint arc consistent, e.g. modifies the respective domains, so that for every value
-            * of one domain, there exists at least one value in the other domain(s) so that the constraint still holds.
-            * If it turns out, that this constraint cannot be satisfied, all domains will be empty after calling this method.
-            * The semantics of this method seem to limit its application to binary constraints. However, the general
-            * arc consistency algorithm will not enforce this (e.g. it will not test wether the constraint is binary
-            * before calling makeArcConsistent). This enables the use of more complex notions of arc consistency,
-            * such as the arc consistency of a global constraint, in a well defined way.
-            * @return a collection of variables which domains have changed making the constraint arc consistent.
-            * When no variable's domain was changed, it may return either an empty Collection or null
-        */
-	public Collection<Variable> makeArcConsistent(){
-		
-		ArrayList<Variable> changedVars=new ArrayList<Variable>();
-		if (getNumberOfFreeVariables() == 2){
-			Iterator<Variable> varIt = getFreeVariables().iterator();
-	
-			// we know that the Iterator points only to two variables
-			Variable cVar=varIt.next();		//CurrentVariable
-			Variable oVar=varIt.next();		//OtherVariable
-			// and we know that both are untied
-			
-			// the next code we will do twice, the second time we will swap cVar an oVar
-			for ( int i=1;i<=2;i++ ) {
-				
-				boolean changed = false;
-					
-				while (cVar.variableHasValuesLeft()) {
-					// we take a value
-					cVar.tieToNextValue();
-					// and search if find a valid value for the other variable to comply the constrain  
-					boolean satisfiable = false; 
-					while (oVar.variableHasValuesLeft()) {
-						oVar.tieToNextValue();
-						if ( ! this.holds().equals(Constraint.satisfaction.FALSE) ) {
-							satisfiable = true;
-						}
-					}
-					oVar.untie();
-						
-					if ( ! satisfiable ) {
-						// found one binding for cVar, such that the constraint is not satisfiable
-						// remove from domain set
-						changed = true;
-						// System.out.println("AC3: throwing out " + cVar );
-						cVar.getDomain().getSet().clear(cVar.getTiedValue());
-						
-					}
-				}
-	
-				cVar.untie();
-				if ( changed ) {
-					changedVars.add(cVar);
-				}
-				//we tried all values for cvar now switch cVar und oVar (if it is the first iteration)
-				if (i==1)	{	Variable tmp=cVar; cVar=oVar; oVar=tmp; 	}
-			}//end of for-loop 
-		}//end of if free==2
-		return changedVars;
-	}//end of arcCons
-	
-	/**
-	 * creates NodeConsistency
-	 * @return bollean whether we found at lease one value to fit the constraint 
-	 */
-	public boolean makeNodeConsistent(){
-		boolean isSatisfiable = false;
-		if (getNumberOfFreeVariables() == 1){
-			Iterator<Variable> it= getFreeVariables().iterator(); // getFreeVariables() return only one variable ..
-			if(it.hasNext()){
-				Variable cVar=it.next();				
-				while (cVar.variableHasValuesLeft()) {
-					cVar.tieToNextValue();
-					if (holds().equals(Constraint.satisfaction.FALSE)) {
-						cVar.getDomain().getSet().clear(cVar.getTiedValue());
-					}
-					else isSatisfiable = true;
-				}
-				cVar.untie();
-			}
-		}
-		return isSatisfiable;	
-	}
-}
+package straitjacket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+
+/**
+ * Generell representation for constraints
+ * A constraint is part of the model and only read during a search, the domains and tied
+ * values it works on are taken from the SolverState given to its methods.
+ */
+public abstract class Constraint {
+	
+	/**
+	 * A counter of the autotitling, so that the constraintnames are unique
+	 */
+	static private int counter = 0;  
+	
+	/** Enumeration for the state of a constraint. It may be satisfied (TRUE), dissatisfied (FALSE)
+	 * or not determinable (DELAYED).
+	 */
+	public enum satisfaction {TRUE, FALSE, DELAY}
+	
+	/** Enumeration for the cost of running makeArcConsistent() of a constraint, from the cheapest 
+	 * to the most expensive. The propagation runs all pending constraints of a cheaper class before
+	 * it runs one of a more expensive class, see PropagationQueue.
+	 */
+	public enum propagationCost {UNARY, BINARY, LINEAR, GLOBAL}
+
+    /**
+	 * A name for our Constraint
+	 */
+	protected String name;
+	
+	/**
+	 * the dense number of the Constraint in its ConstraintSet, -1 as long as it has not been added to one
+	 */
+	private int id = -1;
+	
+	/**
+	 * A list of the involved variables
+	 */
+	protected HashSet<Variable> variables;
+	
+	/**
+	 * Default-Constructor that will generate a name with an
+	 * underscore and an auto-incremented value like "_42"
+	 */
+    protected Constraint() {
+		this.name = "_" + counter++;
+	}
+	
+	/** General constructor for a constraint object, that'll 
+	 * associate the constraint with the given name. 
+	 * @param name a name for the Constraint 
+	 */
+    protected Constraint(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Gets the name attribute
+	 * @return the name of the Constraint
+	 */
+    protected String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Change the name attribute. You may also set this name
+	 * at construction time.
+	 * @param name the new name for the Constraint
+	 */
+    protected void setName(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Returns the number of the Constraint in its ConstraintSet. The constraints of a set are 
+	 * numbered from 0 on in the order they have been added, so data per constraint can be kept 
+	 * in arrays. A Constraint should not be added to more than one ConstraintSet.
+	 * @return the id of the Constraint, -1 if it has not been added to a ConstraintSet
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Sets the number of the Constraint, only the ConstraintSet it is added to calls this 
+	 * @param id the id of the Constraint
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Returns a string representation of the Constraint
+	 * 
+	 * @return a string representation of the Constraint
+	 */	
+	public String toString() {
+		return this.name;
+	}
+	
+	/**
+	 * Returns the number of involved variables
+	 * @return number of involved variables
+	 */
+	public int getNumberOfVariables() {
+		return variables.size();
+	}
+	
+	/**
+	 * Returns how expensive the propagation of this constraint is. By default it is decided by
+	 * the number of involved variables, constraints with an expensive filtering algorithm
+	 * should override this.
+	 * @return the cost class of the constraint
+	 */
+	public propagationCost getPropagationCost() {
+		switch (variables.size()) {
+			case 0:
+			case 1: return propagationCost.UNARY;
+			case 2: return propagationCost.BINARY;
+			default: return propagationCost.LINEAR;
+		}
+	}
+	
+	/**
+	 * Returns the number of notied involved variables
+	 * @param state the state of the search
+	 * @return number of notied involved variables
+	 */
+	public int getNumberOfFreeVariables(SolverState state) {
+		int free = 0;
+        for (Variable variable : variables) {
+            if (!state.isTiedToValue(variable)) free++;
+        }
+		return free;
+	}
+
+	
+	/**
+	 * 
+	 * Returns all involved untied variables
+	 * @param state the state of the search
+	 * @return all involved untied variables as Collection
+	 */
+    protected Collection<Variable> getFreeVariables(SolverState state) {
+		ArrayList<Variable> freevars=new ArrayList<Variable> ();
+        for (Variable variable : variables) {
+            if (!state.isTiedToValue(variable)) freevars.add(variable);
+        }
+		return freevars;
+	}
+	
+	/**
+	 * 
+	 * Returns all involved variables
+	 * @return all involved variables as Collection
+	 */
+	public Collection<Variable> getVariables() {
+		return variables;
+	}
+	
+	/**
+	 * Checks whether a given variable is involved in the constraint.
+	 * The check is done on the reference, not on the name of the variable!
+	 * @param variable the variable to check
+	 * @return true, if the variable is involved in the constraint
+	 */
+	public boolean containsVariable(Variable variable) {
+		return variables.contains(variable);
+	}
+	
+	/**
+	 * Decides whether the constraint is still satified with respect to the 
+	 * current domains of the involved variables. This default method just returns
+	 * FALSE. You might want to override this behaviour.
+	 * @param state the state of the search, holding the domains and tied values
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	public satisfaction holds(SolverState state) {
+		return satisfaction.FALSE;
+	}
+	
+	/**
+	 * Checks whether the constraint is entailed, i.e. holds for every combination of the values 
+	 * left in the domains (tied variables count as constants). An entailed constraint can't prune
+	 * anything and can't fail anymore, so the search retires it until it backtracks, see 
+	 * ActiveConstraints. The check should be cheap, it is made after every propagation of the 
+	 * constraint. This default method never detects entailment.
+	 * @param state the state of the search, holding the domains and tied values
+	 * @return true if the constraint is guaranteed to hold, false if it is not or if it is unknown
+	 */
+	public boolean isEntailed(SolverState state) {
+		return false;
+	}
+	
+	/**
+	 * Decides whether the constraint is still satified with respect to the 
+	 * given concrete values of the variables. Take care to provide the 
+	 * correct variables in the parameter (they're compared by reference, not by name)
+	 * @param state the state of the search, holding the domains and tied values
+	 * @param valuations a HashMap with variable assignments. 
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	public satisfaction holdsFor(SolverState state, HashMap<Variable,Integer> valuations) {
+		return satisfaction.FALSE;
+	}	
+	
+	/**
+	 * Decides whether a constraint with two variables holds for the given pair of values, without
+	 * looking at any state. The CompiledModel uses it to compile the supports of binary constraints
+	 * into a SupportTable when they are first revised. This default method returns DELAY, so the constraint is revised by checking
+	 * the pairs with holds(SolverState) instead. 
+	 * @param x the first variable
+	 * @param a the value of the first variable
+	 * @param y the second variable
+	 * @param b the value of the second variable
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAY (not determinable this way)
+	 */
+	public satisfaction holdsForPair(Variable x, int a, Variable y, int b) {
+		return satisfaction.DELAY;
+	}
+	
+	/**
+            * Makes this constraint arc consistent, e.g. modifies the respective domains, so that for every value
+            * of one domain, there exists at least one value in the other domain(s) so that the constraint still holds.
+            * If it turns out, that this constraint cannot be satisfied, all domains will be empty after calling this method.
+            * The semantics of this method seem to limit its application to binary constraints. However, the general
+            * arc consistency algorithm will not enforce this (e.g. it will not test wether the constraint is binary
+            * before calling makeArcConsistent). This enables the use of more complex notions of arc consistency,
+            * such as the arc consistency of a global constraint, in a well defined way.
+            * @param state the state of the search, whose domains are narrowed
+            * @return a collection of variables which domains have changed making the constraint arc consistent.
+            * When no variable's domain was changed, it may return either an empty Collection or null
+        */
+	public Collection<Variable> makeArcConsistent(SolverState state){
+		
+		ArrayList<Variable> changedVars=new ArrayList<Variable>();
+		if (getNumberOfFreeVariables(state) == 2){
+			Iterator<Variable> varIt = getFreeVariables(state).iterator();
+	
+			// we know that the Iterator points only to two variables
+			Variable cVar=varIt.next();		//CurrentVariable
+			Variable oVar=varIt.next();		//OtherVariable
+			// and we know that both are untied
+			
+			// revise both directions, the second one already sees the values removed by the first
+			if (revise(state, cVar, oVar)) changedVars.add(cVar);
+			if (revise(state, oVar, cVar)) changedVars.add(oVar);
+		}//end of if free==2
+		return changedVars;
+	}//end of arcCons
+	
+	/**
+	 * Removes every value of cVar that has no support in the domain of oVar, i.e. no value of oVar
+	 * for which the constraint does not fail. Binary constraints with a SupportTable in the model are
+	 * revised on its bit masks, as long as the domains lie within the table. Otherwise the search for 
+	 * a support stops at the first one, and for binary constraints it starts with the residual support
+	 * found by an earlier revision (AC-3rm).
+	 * A support (a, b) found for the value a of cVar is also remembered for the value b of oVar.
+	 * Both variables have to be untied, all other variables of the constraint tied.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param cVar the variable whose values are checked
+	 * @param oVar the other free variable
+	 * @return true if a value has been removed from the domain of cVar
+	 */
+	protected boolean revise(SolverState state, Variable cVar, Variable oVar) {
+		Domain cDomain = state.getDomain(cVar);
+		Domain oDomain = state.getDomain(oVar);
+		SupportTable table = state.getModel().getSupportTable(this);
+		if (table != null && table.covers(cVar, cDomain, oDomain)) return table.revise(cVar, cDomain, oDomain);
+		
+		ResidualSupports cSupports = state.getResidualSupports(this, cVar);
+		ResidualSupports oSupports = cSupports == null ? null : state.getResidualSupports(this, oVar);
+		
+		boolean changed = false;
+		// the order of the values does not matter, so they are visited in the order of the representation
+		for (int ca = cDomain.firstCursor(); ca != Domain.NO_VALUE; ca = cDomain.nextCursor(ca)) {
+			int a = cDomain.valueAt(ca);
+			// still supported by the value found last time
+			if (cSupports != null) {
+				int residue = cSupports.get(a);
+				if (residue != Domain.NO_VALUE && oDomain.contains(residue)) continue;
+			}
+			// search for a valid value of the other variable to comply the constrain
+			state.tieProbe(cVar, a);
+			int support = Domain.NO_VALUE;
+			for (int cb = oDomain.firstCursor(); cb != Domain.NO_VALUE; cb = oDomain.nextCursor(cb)) {
+				int b = oDomain.valueAt(cb);
+				state.tieProbe(oVar, b);
+				if (holds(state) != Constraint.satisfaction.FALSE) {
+					support = b;
+					break;
+				}
+			}
+			state.untieProbe(oVar);
+			
+			if (support == Domain.NO_VALUE) {
+				// found one binding for cVar, such that the constraint is not satisfiable
+				// remove from domain set
+				cDomain.remove(a);
+				changed = true;
+			} else if (cSupports != null) {
+				cSupports.set(a, support);
+				if (oSupports != null) oSupports.set(support, a);
+			}
+		}
+		state.untieProbe(cVar);
+		return changed;
+	}
+	
+	/**
+	 * creates NodeConsistency
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return bollean whether we found at lease one value to fit the constraint 
+	 */
+	public boolean makeNodeConsistent(SolverState state){
+		boolean isSatisfiable = false;
+		if (getNumberOfFreeVariables(state) == 1){
+			Iterator<Variable> it= getFreeVariables(state).iterator(); // getFreeVariables() return only one variable ..
+			if(it.hasNext()){
+				Variable cVar=it.next();
+				Domain domain = state.getDomain(cVar);
+				for (int value = domain.min(); value != Domain.NO_VALUE; value = domain.nextValue(value)) {
+					state.tieProbe(cVar, value);
+					if (holds(state).equals(Constraint.satisfaction.FALSE)) {
+						domain.remove(value);
+					}
+					else isSatisfiable = true;
+				}
+				state.untieProbe(cVar);
+			}
+		}
+		return isSatisfiable;	
+	}
+}
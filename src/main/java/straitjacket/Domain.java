@@ -1,135 +1,324 @@
-package straitjacket;
-
-import java.util.BitSet;
-import java.util.Stack;
-
-/** 
- * A representation for a domain ( Set of possible values for a Variable)
- */
-public class Domain {
-
-	private static final long serialVersionUID = 1L;
-	
-	/** 
-	 * A bitset which actually repesents the domain (as set of possible values)
-	 * They are organised in a Stack, so that we can save a domain in the step of the 
-	 * backtracking algorith and cutting the domain on a deeper level without loosing the 
-	 * old domain 
-	 */	
-	private final Stack<BitSet> domainStack = new Stack<BitSet>();
-	
-	/** 
-	 * Creates a new empty Domain. So a Variable with this Domain has no possible allocation.  
-	 */
-	public Domain () {
-		domainStack.push(new BitSet()); 
-	}
-	
-	/** 
-	 * Creates a new Domain with the values of elements.
-	 * @param elements the list of possible values 
-	 */	
-	public Domain (int[] elements) {
-		domainStack.push(new BitSet());
-		for (int i : elements) {
-			this.domainStack.peek().set(i);
-		}
-	}
-	
-	/**
-	 * Define the domain as a range containing value from [lb, ub]
-	 * @param lb lower bound of the range
-	 * @param ub upper bound of the range
-	 */
-	public Domain (int lb, int ub) {
-		domainStack.push(new BitSet());
-		domainStack.peek().set(lb,ub+1);
-	}
-	
-	/**
-	 * return the highest valid value in this domain 
-	 * @return the highest valid value in this domain
-	 */
-	public int getMax() {
-		//TODO wenn ich das letzte rausnehmen, wirde der bitset gleich wieder gekuerzt
-		// sonst muss man doch nachsehen ob dieses max ueberhaupt noch true ist
-		return this.domainStack.peek().length();
-	}
-	
-	/**
-	 * Gets the cardinality of the set.
-	 * @returnhow number of elements the set contains
-	 */
-	public int cardinality() {
-		return this.getSet().cardinality();
-	}
-	
-	/**
-	 * Copys the bitset of possible values and push then atop of the domainstack 
-	 */	
-	public void push() {
-		domainStack.push((BitSet)domainStack.peek().clone());
-	}
-	
-	/**
-	 * push an emptySet atop of the domainstack 
-	 * (so no possible values are available on this backtracking level) 
-	 */	
-	public void pushEmpty() {
-		domainStack.push(new BitSet());
-	}
-	
-	/**
-	 * pop the bitset of possible values for the top of the stack
-	 * (this happen when we move a step towards the root in the backtracking)
-	 */
-	public void pop() {
-		domainStack.pop();
-	}
-	
-	/**
-	 * return the BitSet of possible values 
-	 * @return the BitSet of possible values
-	 */
-	public BitSet getSet() {
-		return domainStack.peek();
-	}
-
-	/**
-	 * returns a array of all possible values in the for ov in int array 
-	 * @return athe BitSet of possible values
-	 */
-
-	public int[] validToArray() {
-		int[] output=new int[domainStack.peek().cardinality()];
-		
-		int i=0;
-		if (domainStack.peek().get(0)) {output[0]=0; i++;} 
-		int tmp=0;
-		
-		for(;i<output.length;i++)
-		{
-			tmp=domainStack.peek().nextSetBit(tmp+1);
-			output[i]=tmp;
-		}
-		return output;
-	}
-
-	/**
-	 * Return a representation of the BitSet of possible values, by listing all possible values 
-	 * @return a String representation of the Domain
-	 */
-	public String toString() {
-		StringBuffer stringRepr = new StringBuffer();
-		stringRepr.append("{");
-		boolean first = true;
-		for (int i=domainStack.peek().nextSetBit(0);i>=0;i=domainStack.peek().nextSetBit(i+1)) {
-			if (!first) stringRepr.append(",");
-			else first = false;
-			stringRepr.append(i);
-		}
-		stringRepr.append("}");
-		return stringRepr.toString();
-	}
-	
-}
+package straitjacket;
+
+import straitjacket.domains.DomainStore;
+
+/**
+ * A representation for a domain ( Set of possible values for a Variable)
+ * The actual storage of the values is up to the subclasses, see straitjacket.domains.
+ * Values of a domain have to lie strictly between Integer.MIN_VALUE and Integer.MAX_VALUE,
+ * Integer.MAX_VALUE is used to indicate that there is no (further) value.
+ * The number of values, the smallest and the largest value are cached and maintained on 
+ * every removal and restore, so size(), min() and max() are constant time queries.
+ */
+public abstract class Domain {
+
+	/**
+	 * returned by nextValue(int) if there is no further value in the domain
+	 */
+	public static final int NO_VALUE = Integer.MAX_VALUE;
+
+	/**
+	 * The trail removed values are recorded on, so that a backtracking algorithm can restore
+	 * them when moving a step towards the root. If it is null, removals are permanent.
+	 */
+	private Trail trail = null;
+	
+	/**
+	 * the number of values in the domain
+	 */
+	private int size = 0;
+	
+	/**
+	 * the smallest value of the domain, NO_VALUE if it is empty
+	 */
+	private int min = NO_VALUE;
+	
+	/**
+	 * the largest value of the domain, Integer.MIN_VALUE if it is empty
+	 */
+	private int max = Integer.MIN_VALUE;
+	
+	/**
+	 * Sets up the cached size and bounds, every subclass has to call this at the end of
+	 * its constructors
+	 * @param size the number of values the domain was created with
+	 */
+	protected final void initialize(int size) {
+		this.size = size;
+		this.min = size == 0 ? NO_VALUE : nextValue(Integer.MIN_VALUE);
+		this.max = size == 0 ? Integer.MIN_VALUE : previousValue(NO_VALUE);
+	}
+
+	/**
+	 * Checks whether the given value is still a possible value of this domain
+	 * @param value the value to check
+	 * @return true if the value is contained in the domain
+	 */
+	public abstract boolean contains(int value);
+
+	/**
+	 * Removes the given value from the domain. The removal is recorded on the trail,
+	 * so it will be undone when backtracking.
+	 * @param value the value to remove
+	 * @return true if the value was contained in the domain before
+	 */
+	public final boolean remove(int value) {
+		if (!removeValue(value)) return false;
+		trailRemoval(value);
+		size--;
+		if (size == 0) {
+			min = NO_VALUE;
+			max = Integer.MIN_VALUE;
+		} else {
+			if (value == min) min = nextValue(value);
+			if (value == max) max = previousValue(value);
+		}
+		return true;
+	}
+	
+	/**
+	 * Puts a value back into the domain, that was removed before. Only the trail calls this,
+	 * with the data trailRemoval(int) has recorded.
+	 * @param value the value to restore
+	 */
+	protected void restore(int value) {
+		restoreValue(value);
+		size++;
+		if (value < min) min = value;
+		if (value > max) max = value;
+	}
+	
+	/**
+	 * Removes the value from the underlying representation.
+	 * @param value the value to remove
+	 * @return true if the value was contained in the domain before
+	 */
+	protected abstract boolean removeValue(int value);
+	
+	/**
+	 * Puts a value back into the underlying representation, that was removed before.
+	 * @param value the value to restore
+	 */
+	protected abstract void restoreValue(int value);
+	
+	/**
+	 * Gets the number of values in the domain.
+	 * @return how number of elements the domain contains
+	 */
+	public final int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the smallest value of the domain
+	 * @return the smallest value or NO_VALUE if the domain is empty
+	 */
+	public final int min() {
+		return min;
+	}
+	
+	/**
+	 * Returns the largest value of the domain
+	 * @return the largest value or Integer.MIN_VALUE if the domain is empty
+	 */
+	public final int max() {
+		return max;
+	}
+	
+	/**
+	 * Checks whether the domain has no values left
+	 * @return true if the domain is empty
+	 */
+	public final boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Returns the smallest value of the domain that is bigger than the given one.
+	 * Use min() to get the smallest value of the domain.
+	 * @param value the value to start the search after
+	 * @return the next value or NO_VALUE if there is none
+	 */
+	public abstract int nextValue(int value);
+	
+	/**
+	 * Returns the largest value of the domain that is smaller than the given one.
+	 * Only used to maintain the cached maximum.
+	 * @param value the value to start the search before
+	 * @return the previous value or NO_VALUE if there is none
+	 */
+	protected abstract int previousValue(int value);
+
+	/**
+	 * Returns the values from [value, value+63] as a bit mask, bit i is set if value+i is
+	 * in the domain. Representations based on bits override this to combine their words
+	 * directly, so a support mask can be tested against the domain with one AND.
+	 * @param value the value of the lowest bit
+	 * @return the 64 bit window of the domain starting at value
+	 */
+	public long getWord(int value) {
+		long word = 0;
+		int v = value == Integer.MIN_VALUE ? min : nextValue(value - 1);
+		for (; v != NO_VALUE && (long)v - value < 64; v = nextValue(v)) word |= 1L << (v - value);
+		return word;
+	}
+	
+	/**
+	 * Starts an iteration over the values in no particular order, for the loops which don't need
+	 * the values sorted, like the revisions of the constraints:
+	 * for (int c = d.firstCursor(); c != NO_VALUE; c = d.nextCursor(c)) { int v = d.valueAt(c); ... }
+	 * The value at the cursor may be removed during the iteration, no other value may be removed 
+	 * or restored. This default iterates in ascending order with the value as cursor, representations
+	 * whose values are not ordered override it to avoid the search for the next larger value.
+	 * @return the cursor of the first value or NO_VALUE if the domain is empty
+	 */
+	public int firstCursor() {
+		return min;
+	}
+	
+	/**
+	 * Moves the cursor of an iteration in no particular order, see firstCursor()
+	 * @param cursor the cursor of the value just visited
+	 * @return the cursor of the next value or NO_VALUE if all values have been visited
+	 */
+	public int nextCursor(int cursor) {
+		return nextValue(cursor);
+	}
+	
+	/**
+	 * Returns the value at the cursor of an iteration in no particular order, see firstCursor()
+	 * @param cursor a cursor returned by firstCursor() or nextCursor(int)
+	 * @return the value at the cursor
+	 */
+	public int valueAt(int cursor) {
+		return cursor;
+	}
+	
+	/**
+	 * Creates an independent domain with the same values, which is not attached to a trail.
+	 * Every SolverState works on its own copies of the domains of the model.
+	 * @param store the store for representations sharing memory with the other domains of a solve
+	 * @return a copy of this domain
+	 */
+	public abstract Domain copy(DomainStore store);
+
+	/**
+	 * Removes all values smaller than the given one, each removal is recorded like remove(int)
+	 * @param value the new lower bound, Domain.NO_VALUE removes everything
+	 * @return true if at least one value has been removed
+	 */
+	public boolean removeBelow(int value) {
+		boolean changed = false;
+		while (min < value && size > 0) {
+			remove(min);
+			changed = true;
+		}
+		return changed;
+	}
+	
+	/**
+	 * Removes all values larger than the given one, each removal is recorded like remove(int)
+	 * @param value the new upper bound, Integer.MIN_VALUE removes everything
+	 * @return true if at least one value has been removed
+	 */
+	public boolean removeAbove(int value) {
+		boolean changed = false;
+		while (max > value && size > 0) {
+			remove(max);
+			changed = true;
+		}
+		return changed;
+	}
+	
+	/**
+	 * Removes all values from the domain, so no possible values are available on this backtracking level
+	 */
+	public void clear() {
+		for (int v=min;v!=NO_VALUE;v=min) remove(v);
+	}
+
+	/**
+	 * Records the removal of the given value on the trail, if the domain is attached to one.
+	 * It is called right after removeValue(int), before the cached size and bounds change.
+	 * Subclasses that rather save their whole state once per level override this 
+	 * together with restore(int).
+	 * @param value the value that has been removed
+	 */
+	protected void trailRemoval(int value) {
+		if (trail != null) trail.record(this, value);
+	}
+	
+	/**
+	 * Puts the given data on the trail, restore(int) will be called with it when backtracking
+	 * @param data the data to record
+	 */
+	protected final void recordOnTrail(int data) {
+		if (trail != null) trail.record(this, data);
+	}
+	
+	/**
+	 * Returns a number identifying the currently open level of the trail, so a subclass
+	 * can tell whether it already saved its state on this level. 
+	 * @return the stamp of the open level, 0 if removals are permanent right now
+	 */
+	protected final int getTrailStamp() {
+		return trail == null ? 0 : trail.getStamp();
+	}
+	
+	/**
+	 * Resets the cached size and bounds, for subclasses restoring a saved state
+	 * @param size the number of values
+	 * @param min the smallest value
+	 * @param max the largest value
+	 */
+	protected final void restoreState(int size, int min, int max) {
+		this.size = size;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Attaches this domain to the trail of the SolverState it belongs to
+	 * @param trail the trail removals should be recorded on
+	 */
+	void setTrail(Trail trail) {
+		this.trail = trail;
+	}
+
+	/**
+	 * Returns the trail this domain records its removals on
+	 * @return the trail or null if the domain is not attached to one
+	 */
+	Trail getTrail() {
+		return trail;
+	}
+
+	/**
+	 * returns a array of all possible values in the for ov in int array
+	 * @return all possible values in ascending order
+	 */
+	public int[] validToArray() {
+		int[] output=new int[size];
+		int i=0;
+		for (int v=min;v!=NO_VALUE;v=nextValue(v)) output[i++]=v;
+		return output;
+	}
+
+	/**
+	 * Return a representation of the domain, by listing all possible values
+	 * @return a String representation of the Domain
+	 */
+	public String toString() {
+		StringBuffer stringRepr = new StringBuffer();
+		stringRepr.append("{");
+		boolean first = true;
+		for (int v=min;v!=NO_VALUE;v=nextValue(v)) {
+			if (!first) stringRepr.append(",");
+			else first = false;
+			stringRepr.append(v);
+		}
+		stringRepr.append("}");
+		return stringRepr.toString();
+	}
+
+}
@@ -0,0 +1,139 @@
+package straitjacket;
+
+/**
+ * The worklist of the propagation, holding the positions of the constraints of a CompiledModel 
+ * which have to be made arc consistent again. There is one bucket per Constraint.propagationCost,
+ * poll() always takes the oldest constraint of the cheapest non-empty bucket, so the cheap
+ * constraints reach their fixpoint before an expensive global constraint runs.
+ * Every bucket is a ring buffer large enough for all constraints and a bitmap tells which
+ * constraints are queued, so add() and poll() take constant time and do not allocate.
+ * A queue is part of a SolverState and reused by every propagation of the search.
+ */
+public class PropagationQueue {
+	
+	/**
+	 * the ring buffers, one per cost class
+	 */
+	private final int[][] buckets;
+	
+	/**
+	 * for every bucket the index of its oldest entry
+	 */
+	private final int[] heads;
+	
+	/**
+	 * for every bucket the number of its entries
+	 */
+	private final int[] sizes;
+	
+	/**
+	 * the capacity of every ring buffer minus one, the capacity is a power of two
+	 */
+	private final int mask;
+	
+	/**
+	 * for every constraint the bucket it belongs to, indexed by its position in the model
+	 */
+	private final int[] bucketOf;
+	
+	/**
+	 * one bit per constraint, set while the constraint is queued
+	 */
+	private final long[] queued;
+	
+	/**
+	 * the number of queued constraints over all buckets
+	 */
+	private int size = 0;
+	
+	/**
+	 * the cheapest bucket that may be non-empty
+	 */
+	private int lowest = 0;
+	
+	/**
+	 * Creates an empty queue for the constraints of the given model
+	 * @param model the model whose constraints are queued
+	 */
+	public PropagationQueue(CompiledModel model) {
+		int n = model.getNumberOfConstraints();
+		int capacity = 1;
+		while (capacity < n) capacity <<= 1;
+		int numberOfBuckets = Constraint.propagationCost.values().length;
+		buckets = new int[numberOfBuckets][capacity];
+		heads = new int[numberOfBuckets];
+		sizes = new int[numberOfBuckets];
+		mask = capacity - 1;
+		bucketOf = new int[n];
+		for (int i = 0; i < n; i++) bucketOf[i] = model.getConstraint(i).getPropagationCost().ordinal();
+		queued = new long[(n + 63) >>> 6];
+		lowest = numberOfBuckets;
+	}
+	
+	/**
+	 * Queues the constraint at the given position, if it is not queued already
+	 * @param position the position of the constraint in the model
+	 * @return true if the constraint has been added
+	 */
+	public boolean add(int position) {
+		long bit = 1L << position;
+		int word = position >>> 6;
+		if ((queued[word] & bit) != 0) return false;
+		queued[word] |= bit;
+		int b = bucketOf[position];
+		buckets[b][(heads[b] + sizes[b]) & mask] = position;
+		sizes[b]++;
+		size++;
+		if (b < lowest) lowest = b;
+		return true;
+	}
+	
+	/**
+	 * Removes the oldest constraint of the cheapest non-empty bucket
+	 * @return the position of the constraint in the model, -1 if the queue is empty
+	 */
+	public int poll() {
+		if (size == 0) return -1;
+		while (sizes[lowest] == 0) lowest++;
+		int position = buckets[lowest][heads[lowest]];
+		heads[lowest] = (heads[lowest] + 1) & mask;
+		sizes[lowest]--;
+		size--;
+		queued[position >>> 6] &= ~(1L << position);
+		return position;
+	}
+	
+	/**
+	 * Checks whether the constraint at the given position is queued
+	 * @param position the position of the constraint in the model
+	 * @return true if the constraint is waiting in the queue
+	 */
+	public boolean contains(int position) {
+		return (queued[position >>> 6] & (1L << position)) != 0;
+	}
+	
+	/**
+	 * Checks whether no constraint is queued
+	 * @return true if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Returns the number of queued constraints
+	 * @return the number of queued constraints
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Removes all queued constraints, e.g. after the propagation found a wipe out.
+	 * Takes time proportional to the number of queued constraints.
+	 */
+	public void clear() {
+		while (size > 0) poll();
+		lowest = sizes.length;
+	}
+}
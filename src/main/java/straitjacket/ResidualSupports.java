@@ -0,0 +1,54 @@
+package straitjacket;
+
+import java.util.Arrays;
+
+/**
+ * The last found supports of the values of one variable in a binary constraint (AC-3rm).
+ * For every value of the variable it keeps the value of the other variable that satisfied
+ * the constraint the last time a support was searched. As long as that value is still in
+ * the domain of the other variable, the value is supported without any check.
+ * The supports are not restored when backtracking, a support that was removed is simply
+ * searched again, so after some revisions most values are confirmed in constant time.
+ * The supports belong to a SolverState, see SolverState.getResidualSupports(Constraint, Variable).
+ */
+public class ResidualSupports {
+	
+	/**
+	 * the smallest value of the variable in the model
+	 */
+	private final int min;
+	
+	/**
+	 * for every value of the variable in the model its last support, Domain.NO_VALUE if none is known
+	 */
+	private final int[] supports;
+	
+	/**
+	 * Creates supports for the values from [min, max], none of them supported yet
+	 * @param min the smallest value of the variable
+	 * @param max the largest value of the variable
+	 */
+	ResidualSupports(int min, int max) {
+		this.min = min;
+		this.supports = new int[max - min + 1];
+		Arrays.fill(supports, Domain.NO_VALUE);
+	}
+	
+	/**
+	 * Returns the last found support of the given value
+	 * @param value a value of the domain the variable had in the model
+	 * @return the value of the other variable, Domain.NO_VALUE if none is known
+	 */
+	public int get(int value) {
+		return supports[value - min];
+	}
+	
+	/**
+	 * Remembers a support of the given value
+	 * @param value a value of the domain the variable had in the model
+	 * @param support the value of the other variable that satisfies the constraint together with value
+	 */
+	public void set(int value, int support) {
+		supports[value - min] = support;
+	}
+}
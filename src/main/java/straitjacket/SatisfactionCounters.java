@@ -0,0 +1,113 @@
+package straitjacket;
+
+/**
+ * Keeps track of the satisfaction of the constraints of a SolverState while the search ties
+ * and unties variables, so the check after a tie only has to look at the constraints of the
+ * tied variable. For every constraint the number of its untied variables is counted, and for
+ * the constraints with all variables tied whether they hold. The model is satisfied once all
+ * constraints have their variables tied and hold, which is decided by one global count.
+ * A constraint only counts as satisfied after it has been checked, so every tie has to be
+ * followed by a check of the tied variable before the next one is asked for.
+ */
+class SatisfactionCounters {
+
+	/**
+	 * the model of the state
+	 */
+	private final CompiledModel model;
+
+	/**
+	 * for every position of a constraint the number of its untied variables
+	 */
+	private final int[] unfixed;
+
+	/**
+	 * for every position of a constraint whether it held when it was last checked with
+	 * all its variables tied
+	 */
+	private final boolean[] satisfied;
+
+	/**
+	 * the number of constraints with all variables tied that hold
+	 */
+	private int satisfiedCount = 0;
+
+	/**
+	 * Sets up the counters of a state with no variable tied. The state has to have its domains
+	 * already, as the constraints without any variable are checked right away.
+	 * @param state the state the counters belong to
+	 */
+	SatisfactionCounters(SolverState state) {
+		this.model = state.getModel();
+		int count = model.getNumberOfConstraints();
+		this.unfixed = new int[count];
+		this.satisfied = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			unfixed[i] = model.getScope(i).length;
+			if (unfixed[i] == 0) setSatisfied(i, model.getConstraint(i).holds(state) == Constraint.satisfaction.TRUE);
+		}
+	}
+
+	/**
+	 * Counts a variable that has been untied before as tied
+	 * @param var the variable which has been tied
+	 */
+	void tied(Variable var) {
+		int[] incidence = model.getIncidence();
+		int end = model.getIncidenceEnd(var);
+		for (int k = model.getIncidenceStart(var); k < end; k++) unfixed[incidence[k]]--;
+	}
+
+	/**
+	 * Counts a variable that has been tied before as untied, the constraints of the variable
+	 * do not count as satisfied anymore
+	 * @param var the variable which has been untied
+	 */
+	void untied(Variable var) {
+		int[] incidence = model.getIncidence();
+		int end = model.getIncidenceEnd(var);
+		for (int k = model.getIncidenceStart(var); k < end; k++) {
+			if (unfixed[incidence[k]]++ == 0) setSatisfied(incidence[k], false);
+		}
+	}
+
+	/**
+	 * Checks the constraints of a variable that has just been tied. The constraints of the
+	 * other variables are not looked at, their satisfaction has been checked when their last
+	 * variable was tied. Domains emptied by the propagation are only seen through the constraints
+	 * of the variable, the search has to look at the result of the propagation itself.
+	 * @param state the state of the search
+	 * @param var the variable just tied
+	 * @return TRUE if all constraints have their variables tied and hold, FALSE if a constraint
+	 *         of the variable failed, DELAY otherwise
+	 */
+	Constraint.satisfaction check(SolverState state, Variable var) {
+		Constraint.satisfaction sat = Constraint.satisfaction.DELAY;
+		// the retired constraints are entailed, so they hold anyway
+		ActiveConstraints active = state.getActiveConstraints();
+		int[] incidence = model.getIncidence();
+		int end = model.getIncidenceEnd(var);
+		for (int k = model.getIncidenceStart(var); k < end; k++) {
+			int position = incidence[k];
+			Constraint.satisfaction cSatisfied = active.isActive(position) ?
+					model.getConstraint(position).holds(state) : Constraint.satisfaction.TRUE;
+			if (cSatisfied == Constraint.satisfaction.FALSE) sat = Constraint.satisfaction.FALSE;
+			// all constraints of the variable are looked at, so none keeps a stale satisfaction
+			if (unfixed[position] == 0) setSatisfied(position, cSatisfied == Constraint.satisfaction.TRUE);
+		}
+		if (sat == Constraint.satisfaction.FALSE) return sat;
+		return satisfiedCount == model.getNumberOfConstraints() ? Constraint.satisfaction.TRUE : sat;
+	}
+
+	/**
+	 * Sets whether a constraint with all variables tied holds and keeps the global count up to date
+	 * @param position the position of the constraint
+	 * @param holds true if the constraint holds
+	 */
+	private void setSatisfied(int position, boolean holds) {
+		if (holds != satisfied[position]) {
+			satisfied[position] = holds;
+			satisfiedCount += holds ? 1 : -1;
+		}
+	}
+}
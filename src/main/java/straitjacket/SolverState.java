@@ -0,0 +1,487 @@
+package straitjacket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import straitjacket.domains.DomainFactory;
+import straitjacket.domains.DomainStore;
+
+/**
+ * The state of one solve of a ConstraintSet: the current domains and the tied values of all 
+ * variables, the trail to restore the domains with, the found solutions and the statistics of
+ * the search. The ConstraintSet, its variables and its constraints are only read while solving,
+ * every state works on its own copies of the domains. So the same ConstraintSet can be solved
+ * by several states at once, as long as each state is only used by one thread at a time and 
+ * the ConstraintSet is not changed meanwhile.
+ */
+public class SolverState {
+	
+	/**
+	 * the problem to solve
+	 */
+	private final ConstraintSet cs;
+	
+	/**
+	 * the compiled form of the problem
+	 */
+	private final CompiledModel model;
+	
+	/**
+	 * the domains of all variables, indexed by the id of the variable
+	 */
+	private final Domain[] domains;
+	
+	/**
+	 * the values the variables are tied to, indexed by the id of the variable, 
+	 * Domain.NO_VALUE for untied variables
+	 */
+	private final int[] tiedValues;
+	
+	/**
+	 * the undo log shared by all domains of this state, so a step in the
+	 * backtracking only has to restore the values that have actually been removed
+	 */
+	private final Trail trail = new Trail();
+	
+	/**
+	 * the arena for the words of the packed domains of this state
+	 */
+	private final DomainStore domainStore = new DomainStore();
+	
+	/**
+	 * the constraints not entailed on the current path of the search
+	 */
+	private final ActiveConstraints activeConstraints;
+	
+	/**
+	 * the number of untied variables and the satisfaction of the constraints, for the check after a tie
+	 */
+	private final SatisfactionCounters satisfactionCounters;
+	
+	/**
+	 * the worklist of the propagation, reused by every call of ArcConsistency.ac3
+	 */
+	private final PropagationQueue queue;
+	
+	/**
+	 * the residual supports of the binary constraints, two per position of a constraint in the
+	 * model, one for each of its variables, created when they are first asked for
+	 */
+	private final ResidualSupports[] residualSupports;
+	
+	/**
+	 * the data the constraints keep between their propagations, by the position of the constraint
+	 * in the model, see getConstraintData(Constraint)
+	 */
+	private final Object[] constraintData;
+	
+	/**
+	 *  Found solutions are saved in form of a ArrayList of HashMap, where in each HashMap save to a Varialbe the 
+	 *  valid values.
+	 *  
+	 *  We save do not only a value for the possblie allocation of a domain, as to be expected
+	 *  by out implimentation of the given Constraint, with the objective to give possible extensions of this
+	 *  program the possiblity to decide on there own how to handly the problem of return Satifaction.TRUE.
+	 *  Out Constraints return Satifaction.TRUE only when all Variables are tied, but in some cases that should not
+	 *  be necessary.
+	 */
+	private final ArrayList< HashMap<Variable,HashSet<Integer>>> solutions = new ArrayList<HashMap<Variable,HashSet<Integer>> > ();
+	
+	/**
+	 * the number of iterations of the last search
+	 */
+	private int iterations = 0;
+	
+	/**
+	 * the time the last search took in milliseconds
+	 */
+	private long time = 0;
+	
+	/**
+	 * Creates a new state for solving the given ConstraintSet, starting with copies of
+	 * the domains of its variables and with no variable tied.
+	 * @param cs the ConstraintSet to solve
+	 */
+	public SolverState(ConstraintSet cs) {
+		this.cs = cs;
+		this.model = cs.compile();
+		this.queue = new PropagationQueue(model);
+		this.activeConstraints = new ActiveConstraints(model.getNumberOfConstraints(), trail);
+		this.residualSupports = new ResidualSupports[2 * model.getNumberOfConstraints()];
+		this.constraintData = new Object[model.getNumberOfConstraints()];
+		int n = cs.getNumberOfVariableIds();
+		this.domains = new Domain[n];
+		this.tiedValues = new int[n];
+		for (int id = 0; id < n; id++) {
+			domains[id] = cs.getVariableById(id).getDomain().copy(domainStore);
+			domains[id].setTrail(trail);
+			tiedValues[id] = Domain.NO_VALUE;
+		}
+		this.satisfactionCounters = new SatisfactionCounters(this);
+	}
+	
+	/**
+	 * Returns the ConstraintSet this state belongs to
+	 * @return the ConstraintSet being solved
+	 */
+	public ConstraintSet getConstraintSet() {
+		return cs;
+	}
+	
+	/**
+	 * Returns the compiled form of the ConstraintSet
+	 * @return the compiled model
+	 */
+	public CompiledModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * Returns the current domain of the given Variable
+	 * @param var a Variable of the ConstraintSet
+	 * @return the domain of the Variable in this state
+	 */
+	public Domain getDomain(Variable var) {
+		return domains[var.getId()];
+	}
+	
+	/**
+	 * Return the value the Variable is tied to
+	 * @param var a Variable of the ConstraintSet
+	 * @return the value the Variable is tied to, Domain.NO_VALUE if it is untied
+	 */
+	public int getTiedValue(Variable var) {
+		return tiedValues[var.getId()];
+	}
+	
+	/**
+	 * Ties the Variable to the given value
+	 * @param var a Variable of the ConstraintSet
+	 * @param value the value we want the Variable to tie to
+	 */
+	public void tieToValue(Variable var, int value) {
+		if (tiedValues[var.getId()] == Domain.NO_VALUE) satisfactionCounters.tied(var);
+		tiedValues[var.getId()] = value;
+	}
+	
+	/**
+	 * check whether the Variable is tied or not
+	 * @param var a Variable of the ConstraintSet
+	 * @return true if the Variable is tied, false otherwise
+	 */
+	public boolean isTiedToValue(Variable var) {
+		return tiedValues[var.getId()] != Domain.NO_VALUE;
+	}
+	
+	/**
+	 * unties the Variable
+	 * @param var a Variable of the ConstraintSet
+	 */
+	public void untie(Variable var) {
+		if (tiedValues[var.getId()] != Domain.NO_VALUE) satisfactionCounters.untied(var);
+		tiedValues[var.getId()] = Domain.NO_VALUE;
+	}
+	
+	/**
+	 * Ties an untied Variable to the given value for a look at the constraints during the propagation,
+	 * without counting it as tied, so the check after a tie does not see it. The Variable has to
+	 * be untied by untieProbe(Variable) before the next tie or check.
+	 * @param var an untied Variable of the ConstraintSet
+	 * @param value the value to probe
+	 */
+	void tieProbe(Variable var, int value) {
+		tiedValues[var.getId()] = value;
+	}
+	
+	/**
+	 * Unties a Variable tied by tieProbe(Variable, int)
+	 * @param var a Variable of the ConstraintSet
+	 */
+	void untieProbe(Variable var) {
+		tiedValues[var.getId()] = Domain.NO_VALUE;
+	}
+	
+	/**
+	 * Ties the given variable to the next possible value 
+	 * That means that the methode tie the Variable to the next value that is
+	 * bigger (and valid) then the value the Variable was tied before starting the method.
+	 * If there is no such value, the Variable ends up untied.
+	 * @param var a Variable of the ConstraintSet
+	 */
+	public void tieToNextValue(Variable var) {
+		int id = var.getId();
+		if (tiedValues[id] == Domain.NO_VALUE) {
+			// the variable is not yet tied to any value
+			tiedValues[id] = domains[id].min();
+			if (tiedValues[id] != Domain.NO_VALUE) satisfactionCounters.tied(var);
+		} else {
+			// we still have values left, so set the next one
+			tiedValues[id] = domains[id].nextValue(tiedValues[id]);
+			if (tiedValues[id] == Domain.NO_VALUE) satisfactionCounters.untied(var);
+		}
+	}
+	
+	/**
+	 * Checks whether there are still values to check for a variable.
+	 * So this method checks whether there is a value left in the domain, which is 
+	 * bigger than the value the variable is tie at the moment
+	 * @param var a Variable of the ConstraintSet
+	 * @return true, if there are still values
+	 */
+	public boolean variableHasValuesLeft(Variable var) {
+		int id = var.getId();
+		if (tiedValues[id] != Domain.NO_VALUE) {
+			return tiedValues[id] < domains[id].max();
+		} else {
+			return !domains[id].isEmpty();
+		}
+	}
+	
+	/**
+	 * opens a new level on the trail, so we can initalise a step in the backtracking 
+	 * without losing information of the old domains. No domain is copied, every
+	 * domain records the values it loses from now on.
+	 */
+	public void pushAllDomains() {
+		trail.newLevel();
+	}
+	
+	/**
+	 * restores all values removed from the domains since the last call of pushAllDomains().
+	 * Importet when rising back in the backtracking algorith, where found restriction for 
+	 * an subtree do not optain by rising back to the root. 
+	 */
+	public void popAllDomains() {
+		trail.backtrack();
+	}
+	
+	/**
+	 * Returns the trail the domains of this state record their removals on
+	 * @return the trail of this state
+	 */
+	public Trail getTrail() {
+		return trail;
+	}
+	
+	/**
+	 * Returns the worklist of the propagation
+	 * @return the propagation queue of this state
+	 */
+	public PropagationQueue getPropagationQueue() {
+		return queue;
+	}
+	
+	/**
+	 * Returns the constraints that are not entailed on the current path of the search
+	 * @return the active constraints of this state
+	 */
+	public ActiveConstraints getActiveConstraints() {
+		return activeConstraints;
+	}
+	
+	/**
+	 * Returns the residual supports of the values of a variable in a binary constraint.
+	 * There are none for constraints with more than two variables, as the support of a value
+	 * would then depend on the tied values of the other variables, and none for variables
+	 * with a huge span of values.
+	 * @param c a constraint of the model
+	 * @param var one of the two variables of the constraint
+	 * @return the supports of the values of var or null if there are none for this pair
+	 */
+	public ResidualSupports getResidualSupports(Constraint c, Variable var) {
+		int position = model.getPosition(c);
+		if (position < 0) return null;
+		Variable[] scope = model.getScope(position);
+		if (scope.length != 2 || (scope[0] != var && scope[1] != var)) return null;
+		int slot = 2 * position + (scope[0] == var ? 0 : 1);
+		if (residualSupports[slot] == null) {
+			// the values of the model domain, the domain of the state is always a subset of it 
+			Domain initial = var.getDomain();
+			if (initial.isEmpty() || (long)initial.max() - initial.min() >= DomainFactory.MAX_DENSE_SPAN) return null;
+			residualSupports[slot] = new ResidualSupports(initial.min(), initial.max());
+		}
+		return residualSupports[slot];
+	}
+	
+	/**
+	 * Returns the data a constraint keeps in this state between its propagations, like the
+	 * matching of an AllDifferentConstraint. The constraints themselves are shared by all states
+	 * of a ConstraintSet, so anything a constraint changes while solving has to be kept here.
+	 * @param c a constraint of the model
+	 * @return the data set by the constraint before, null if there is none
+	 */
+	public Object getConstraintData(Constraint c) {
+		int position = model.getPosition(c);
+		return position < 0 ? null : constraintData[position];
+	}
+	
+	/**
+	 * Sets the data a constraint keeps in this state, see getConstraintData(Constraint)
+	 * @param c a constraint of the model
+	 * @param data the data of the constraint
+	 * @throws IllegalArgumentException if the constraint is not part of the model
+	 */
+	public void setConstraintData(Constraint c, Object data) {
+		int position = model.getPosition(c);
+		if (position < 0) throw new IllegalArgumentException("The constraint " + c + " is not part of the model.");
+		constraintData[position] = data;
+	}
+	
+	/**
+	 * Returns the arena holding the words of the packed domains of this state
+	 * @return the domain store of this state
+	 */
+	public DomainStore getDomainStore() {
+		return domainStore;
+	}
+	
+	/**
+	 * check whether the ConstrainSet is satified in this state
+	 * Constraint.satisfaction.TRUE: if all Constraints are satisfied for the given Variable allocation
+	 * Constraint.satisfaction.DELAY: if not all nessecary Variables are tied, and no fault was found for the Variables that are already tied
+	 * Constraint.satisfaction.FALSE: if a fault was found for the Variables that are already tied
+	 * @return Constraint.satisfaction.TRUE if all Constraints are satisfied, FALSE if a Constraint failed, DELAY if no further statement can be made
+	 */
+	public Constraint.satisfaction isSatisfied() {
+		return model.isSatisfied(this);
+	}
+	
+	/**
+	 * check whether the ConstraintSet is satisfied after the given Variable has been tied, 
+	 * looking only at the constraints of that Variable. The other constraints have been checked
+	 * when their last Variable was tied, so this only works if every tie is followed by this check.
+	 * Domains emptied by the propagation are only seen if the Variable is involved, so the result
+	 * of ArcConsistency.ac3 has to be looked at, too.
+	 * @param var the Variable tied last
+	 * @return Constraint.satisfaction.TRUE if all Constraints are satisfied, FALSE if a Constraint of the Variable failed, DELAY if no further statement can be made
+	 */
+	public Constraint.satisfaction isSatisfied(Variable var) {
+		return satisfactionCounters.check(this, var);
+	}
+	
+	/**
+	 * Returns the number of iterations the last search in this state took
+	 * @return the number of iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Returns the time the last search in this state took
+	 * @return the time in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * Sets the statistics of a search
+	 * @param iterations the number of iterations
+	 * @param time the time in milliseconds
+	 */
+	void setStatistics(int iterations, long time) {
+		this.iterations = iterations;
+		this.time = time;
+	}
+
+	/**
+	 * Returns a String representation of the found solutions
+	 * @return a String representation of the found solutions
+	 */
+	public String solutionsToString(){
+		
+		if (solutions.size()==0) return "no Solutions found";
+		
+		StringBuffer stringRepr = new StringBuffer();		
+		stringRepr.append("Solutions: " );		
+		Iterator< HashMap<Variable,HashSet<Integer>>> solutionIt= solutions.iterator();
+		int i=0;
+		while(solutionIt.hasNext()){
+            stringRepr.append("\n\tSolution ").append(++i).append(":\n\t");
+			HashMap<Variable,HashSet<Integer>> solution = solutionIt.next();
+			for (int v = 0; v < model.getNumberOfVariables(); v++) {
+				Variable var = model.getVariable(v);
+				HashSet<Integer> value = solution.get(var);
+                stringRepr.append(var.getName()).append(" in ").append(value.toString()).append("; ");
+			}		
+		}
+		return stringRepr.toString();
+	}
+	
+	/**
+	 * Returns all found and saved solutions
+	 * @return all found and saved solutions
+	 */
+	public ArrayList< HashMap<Variable,HashSet<Integer>>> getAllFoundSolutions(){
+		return solutions;
+	}
+
+	/**
+	 * Save the current allocation of the Variable as a solution
+	 */
+	public void saveVariableAllocationsAsSolution(){
+		HashMap<Variable,HashSet<Integer>> solution = new HashMap<Variable,HashSet<Integer>>();
+		
+		for (int v = 0; v < model.getNumberOfVariables(); v++) {
+			Variable var = model.getVariable(v);
+			HashSet<Integer> domain = new HashSet<Integer>();
+			if (isTiedToValue(var)) {
+				domain.add(getTiedValue(var));
+			} else {
+				Domain d = getDomain(var);
+				for (int value=d.min();value!=Domain.NO_VALUE;value=d.nextValue(value)) 
+					domain.add(value);
+			}
+			solution.put(var,domain);
+		}
+		solutions.add(solution);
+	}
+	
+	/**
+	 * Returns a String representation of a Variable in this state, that is its name or, 
+	 * if the Variable is tied, a String of the kind:  name (=TiedValue) 
+	 * @param var a Variable of the ConstraintSet
+	 * @return the name of the Variable and its tied value
+	 */
+	public String toString(Variable var) {
+		if (isTiedToValue(var)) return var.getName() + "(=" + getTiedValue(var) + ")";
+		else return var.getName();
+	}
+	
+	/**
+	 * Returns a string that contains a representation of the current
+	 * variable allocation.
+	 * @return string containing the current variable allocation
+	 */
+	public String variableAllocationToString() {
+		StringBuffer stringRepr = new StringBuffer();	
+		
+		for (int v = 0; v < model.getNumberOfVariables(); v++) {
+			stringRepr.append(toString(model.getVariable(v)));
+			stringRepr.append(" ");
+		}
+		
+		return stringRepr.toString();
+	}
+	
+	/**
+	 * Return a String describing all Constaints and the current domains of all Variables
+	 * @return returns a String representation of the state
+	 */
+	public String toString() {
+		StringBuffer stringRepr = new StringBuffer();
+		stringRepr.append("SET:" + "\n");
+		for (int c = 0; c < model.getNumberOfConstraints(); c++) {
+            stringRepr.append(model.getConstraint(c)).append("\n");
+		}
+		stringRepr.append("\n");
+		for (int v = 0; v < model.getNumberOfVariables(); v++) {
+			Variable var = model.getVariable(v);
+            stringRepr.append(toString(var)).append(" in ").append(getDomain(var)).append("\n");
+		}
+		return stringRepr.toString();
+	}
+}
@@ -0,0 +1,225 @@
+package straitjacket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The supports of a constraint with two variables, compiled into bit masks (AC3-bit).
+ * For every value a of one variable the table holds a mask of the values of the other 
+ * variable which satisfy the constraint together with a, in the layout of Domain.getWord(int).
+ * A value is supported if its mask and the domain of the other variable have a common bit,
+ * so a revision needs one AND per value and word instead of a check per pair of values.
+ * The tables are made by CompiledModel.getSupportTable(Constraint) for the binary constraints 
+ * of small domains, the first time one of them is revised.
+ */
+public class SupportTable {
+	
+	/**
+	 * the largest number of values (from the smallest to the largest) a variable may span 
+	 * to get a table, this bounds a table to 2 * MAX_SPAN * MAX_SPAN / 64 words and a mask to 4 words
+	 */
+	public static final int MAX_SPAN = 256;
+	
+	/**
+	 * the largest number of words the tables of one model may take together (8 MB), 
+	 * the constraints revised after the tables have used it up are revised pair by pair
+	 */
+	public static final long MAX_MODEL_WORDS = 1L << 20;
+	
+	/**
+	 * the table of a constraint which has none, it holds no supports
+	 */
+	static final SupportTable NONE = new SupportTable(null, 0, 0, 0, 0);
+	
+	/**
+	 * the first variable of the constraint
+	 */
+	private final Variable first;
+	
+	/**
+	 * the smallest value of the first variable when the table was made
+	 */
+	private final int firstMin;
+	
+	/**
+	 * the smallest value of the second variable when the table was made
+	 */
+	private final int secondMin;
+	
+	/**
+	 * the number of values from the smallest to the largest value of the first variable 
+	 */
+	private final int firstSpan;
+	
+	/**
+	 * the number of values from the smallest to the largest value of the second variable 
+	 */
+	private final int secondSpan;
+	
+	/**
+	 * the number of words of a mask of values of the first variable
+	 */
+	private final int firstWords;
+	
+	/**
+	 * the number of words of a mask of values of the second variable
+	 */
+	private final int secondWords;
+	
+	/**
+	 * for every value a of the first variable the supporting values of the second variable,
+	 * the mask of a starts at (a - firstMin) * secondWords
+	 */
+	private final long[] firstSupports;
+	
+	/**
+	 * for every value b of the second variable the supporting values of the first variable,
+	 * the mask of b starts at (b - secondMin) * firstWords
+	 */
+	private final long[] secondSupports;
+	
+	/**
+	 * Creates an empty table, compile(Constraint, Variable, Variable) fills it
+	 * @param first the first variable
+	 * @param firstMin the smallest value of the first variable
+	 * @param firstSpan the number of values from the smallest to the largest value of the first variable
+	 * @param secondMin the smallest value of the second variable
+	 * @param secondSpan the number of values from the smallest to the largest value of the second variable
+	 */
+	private SupportTable(Variable first, int firstMin, int firstSpan, int secondMin, int secondSpan) {
+		this.first = first;
+		this.firstMin = firstMin;
+		this.secondMin = secondMin;
+		this.firstSpan = firstSpan;
+		this.secondSpan = secondSpan;
+		this.firstWords = (firstSpan + 63) >>> 6;
+		this.secondWords = (secondSpan + 63) >>> 6;
+		this.firstSupports = new long[firstSpan * secondWords];
+		this.secondSupports = new long[secondSpan * firstWords];
+	}
+	
+	/**
+	 * Compiles the supports of a binary constraint from the domains the variables have in the model
+	 * The words of the table are taken from the given budget, which is left as it is if no table is made.
+	 * @param c the constraint
+	 * @param first the first variable of the constraint
+	 * @param second the second variable of the constraint
+	 * @param budget the number of words the tables of the model may still take
+	 * @return the table or null if a domain spans too many values, the budget is used up or the 
+	 * 		   constraint can't decide a pair of values on its own, see Constraint.holdsForPair(Variable, int, Variable, int)
+	 */
+	static SupportTable compile(Constraint c, Variable first, Variable second, AtomicLong budget) {
+		Domain x = first.getDomain();
+		Domain y = second.getDomain();
+		if (x.isEmpty() || y.isEmpty()) return null;
+		long firstSpan = (long)x.max() - x.min() + 1;
+		long secondSpan = (long)y.max() - y.min() + 1;
+		if (firstSpan > MAX_SPAN || secondSpan > MAX_SPAN) return null;
+		// constraints which don't decide pairs on their own say so for the first pair already
+		if (c.holdsForPair(first, x.min(), second, y.min()) == Constraint.satisfaction.DELAY) return null;
+		long words = firstSpan * ((secondSpan + 63) >>> 6) + secondSpan * ((firstSpan + 63) >>> 6);
+		if (!reserve(budget, words)) return null;
+		
+		SupportTable table = new SupportTable(first, x.min(), (int)firstSpan, y.min(), (int)secondSpan);
+		for (int a = x.min(); a != Domain.NO_VALUE; a = x.nextValue(a)) {
+			for (int b = y.min(); b != Domain.NO_VALUE; b = y.nextValue(b)) {
+				Constraint.satisfaction s = c.holdsForPair(first, a, second, b);
+				if (s == Constraint.satisfaction.DELAY) {
+					budget.addAndGet(words);
+					return null;
+				}
+				if (s == Constraint.satisfaction.TRUE) {
+					int i = a - table.firstMin;
+					int j = b - table.secondMin;
+					table.firstSupports[i * table.secondWords + (j >>> 6)] |= 1L << j;
+					table.secondSupports[j * table.firstWords + (i >>> 6)] |= 1L << i;
+				}
+			}
+		}
+		return table;
+	}
+	
+	/**
+	 * Takes the given number of words from the budget if it has enough left
+	 * @param budget the number of words the tables may still take
+	 * @param words the number of words of a table
+	 * @return true if the words have been taken
+	 */
+	private static boolean reserve(AtomicLong budget, long words) {
+		for (;;) {
+			long left = budget.get();
+			if (left < words) return false;
+			if (budget.compareAndSet(left, left - words)) return true;
+		}
+	}
+	
+	/**
+	 * Returns the number of words the masks of this table take
+	 * @return the size of the table in words
+	 */
+	long getWords() {
+		return firstSupports.length + secondSupports.length;
+	}
+	
+	/**
+	 * Checks whether the table holds all values of the given domains. The domains of a search
+	 * are copies of the domains of the variables, which may have been redefined after the 
+	 * search has been set up, see Variable.setDomain(int, int). 
+	 * @param cVar one of the two variables of the constraint
+	 * @param cDomain the current domain of cVar
+	 * @param oDomain the current domain of the other variable
+	 * @return true if the table can revise the domains, false if they have to be revised pair by pair
+	 */
+	public boolean covers(Variable cVar, Domain cDomain, Domain oDomain) {
+		boolean isFirst = cVar == first;
+		return covers(cDomain, isFirst ? firstMin : secondMin, isFirst ? firstSpan : secondSpan)
+				&& covers(oDomain, isFirst ? secondMin : firstMin, isFirst ? secondSpan : firstSpan);
+	}
+	
+	/**
+	 * Checks whether the values of a domain lie within the values of a table
+	 * @param domain the domain
+	 * @param min the smallest value of the table
+	 * @param span the number of values of the table
+	 * @return true if the domain is empty or its values lie within the table
+	 */
+	private static boolean covers(Domain domain, int min, int span) {
+		return domain.isEmpty() || (domain.min() >= min && (long)domain.max() - min < span);
+	}
+	
+	/**
+	 * Removes every value of cVar that has no support in the domain of the other variable.
+	 * The domains have to lie within the table, see covers(Variable, Domain, Domain).
+	 * @param cVar the variable whose values are checked, one of the two variables of the constraint
+	 * @param cDomain the current domain of cVar
+	 * @param oDomain the current domain of the other variable
+	 * @return true if a value has been removed from cDomain
+	 */
+	public boolean revise(Variable cVar, Domain cDomain, Domain oDomain) {
+		boolean isFirst = cVar == first;
+		long[] supports = isFirst ? firstSupports : secondSupports;
+		int cMin = isFirst ? firstMin : secondMin;
+		int oMin = isFirst ? secondMin : firstMin;
+		int words = isFirst ? secondWords : firstWords;
+		
+		// the domain of the other variable in the layout of the masks, MAX_SPAN allows at most 4 words
+		long other0 = oDomain.getWord(oMin);
+		long other1 = words > 1 ? oDomain.getWord(oMin + 64) : 0;
+		long other2 = words > 2 ? oDomain.getWord(oMin + 128) : 0;
+		long other3 = words > 3 ? oDomain.getWord(oMin + 192) : 0;
+		
+		boolean changed = false;
+		for (int cursor = cDomain.firstCursor(); cursor != Domain.NO_VALUE; cursor = cDomain.nextCursor(cursor)) {
+			int a = cDomain.valueAt(cursor);
+			int row = (a - cMin) * words;
+			long common = supports[row] & other0;
+			if (words > 1) common |= supports[row + 1] & other1;
+			if (words > 2) common |= supports[row + 2] & other2;
+			if (words > 3) common |= supports[row + 3] & other3;
+			if (common == 0) {
+				cDomain.remove(a);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+}
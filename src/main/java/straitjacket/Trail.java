@@ -0,0 +1,148 @@
+package straitjacket;
+
+/**
+ * A shared undo log for the domains of a SolverState.
+ * Instead of copying every domain on each level of the backtracking, a domain records
+ * each value it loses on the trail. Going back one level then only restores the values
+ * removed since the matching call of newLevel(), so the cost of backtracking is
+ * proportional to the number of changes and not to the number of variables.
+ * Removals made while no level is open (e.g. before the search starts) are permanent.
+ * A domain may also record its own data instead of the removed value, see Domain#trailRemoval(int).
+ * The ActiveConstraints of the state record their retirements on the same trail.
+ */
+public class Trail {
+
+	/**
+	 * the domains which lost a value (or the active constraints which retired one), in the order of the removals
+	 */
+	private Object[] owners = new Object[64];
+
+	/**
+	 * the removed values, values[i] was removed from owners[i]
+	 */
+	private int[] values = new int[64];
+
+	/**
+	 * the number of recorded removals
+	 */
+	private int size = 0;
+
+	/**
+	 * for every open level the size of the trail at the time the level was opened
+	 */
+	private int[] levelStarts = new int[16];
+
+	/**
+	 * for every open level a number that is unique for the whole lifetime of the trail
+	 */
+	private int[] levelStamps = new int[16];
+	
+	/**
+	 * the number of open levels
+	 */
+	private int level = 0;
+	
+	/**
+	 * the stamp of the next level to open
+	 */
+	private int nextStamp = 1;
+
+	/**
+	 * Opens a new level. All removals recorded from now on will be undone by the
+	 * next call of backtrack().
+	 */
+	public void newLevel() {
+		if (level == levelStarts.length) {
+			int[] newStarts = new int[2 * levelStarts.length];
+			int[] newStamps = new int[2 * levelStarts.length];
+			System.arraycopy(levelStarts, 0, newStarts, 0, level);
+			System.arraycopy(levelStamps, 0, newStamps, 0, level);
+			levelStarts = newStarts;
+			levelStamps = newStamps;
+		}
+		levelStamps[level] = nextStamp++;
+		levelStarts[level++] = size;
+	}
+
+	/**
+	 * Undoes all removals recorded since the last call of newLevel() and closes that level.
+	 * @throws IllegalStateException if there is no open level
+	 */
+	public void backtrack() {
+		if (level == 0) throw new IllegalStateException("There is no level to backtrack to.");
+		int start = levelStarts[--level];
+		// restore in reverse order, so every domain sees its values coming back
+		// in the opposite order they were removed
+		for (int i = size - 1; i >= start; i--) {
+			if (owners[i] instanceof Domain) ((Domain)owners[i]).restore(values[i]);
+			else ((ActiveConstraints)owners[i]).restore(values[i]);
+			owners[i] = null;
+		}
+		size = start;
+	}
+
+	/**
+	 * Records that the given value was removed from the given domain. If no level is
+	 * open the removal is permanent and nothing is recorded.
+	 * @param domain the domain which lost the value
+	 * @param value the removed value
+	 */
+	void record(Domain domain, int value) {
+		push(domain, value);
+	}
+
+	/**
+	 * Records that the given active constraints had the given number of constraints before one was retired.
+	 * If no level is open nothing is recorded.
+	 * @param active the active constraints of the state
+	 * @param size the number of active constraints before the retirement
+	 */
+	void record(ActiveConstraints active, int size) {
+		push(active, size);
+	}
+
+	/**
+	 * Puts an entry on the trail, if a level is open
+	 * @param owner the domain or active constraints to give the data back to when backtracking
+	 * @param value the data
+	 */
+	private void push(Object owner, int value) {
+		if (level == 0) return;
+		if (size == values.length) {
+			Object[] newOwners = new Object[2 * size];
+			int[] newValues = new int[2 * size];
+			System.arraycopy(owners, 0, newOwners, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			owners = newOwners;
+			values = newValues;
+		}
+		owners[size] = owner;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Returns the number of open levels
+	 * @return the number of open levels
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns a number identifying the open level. Each call of newLevel() opens a level
+	 * with a new stamp, so a domain can save its state once per level.
+	 * @return the stamp of the open level or 0 if no level is open
+	 */
+	public int getStamp() {
+		return level == 0 ? 0 : levelStamps[level-1];
+	}
+	
+	/**
+	 * Returns the number of removals that would be undone by backtracking to the root
+	 * @return the number of recorded removals
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,127 @@
+package straitjacket.benchmarks;
+
+import java.util.HashSet;
+
+import straitjacket.Constraint;
+import straitjacket.ConstraintSet;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+import straitjacket.VariableNameExistsException;
+import straitjacket.constraints.AllDifferentConstraint;
+
+/**
+ * Measures the satisfaction check of the AllDifferentConstraint, which the search runs for every
+ * constraint of the tied variable on every node. The bit mask check is compared with a check that
+ * collects the fixed values in a HashSet, for a row of a 9x9 Sudoku and for 100 queens. Each
+ * case is run with all variables tied to different values (TRUE), with the last variable tied
+ * to the value of the first (FALSE) and with the last variable left free (DELAY).
+ * The program prints the best time of a number of rounds in nanoseconds per call.
+ * Usage: AllDifferentHoldsBenchmark [rounds]
+ */
+public class AllDifferentHoldsBenchmark {
+
+	/**
+	 * the number of rounds if none is given
+	 */
+	private static final int DEFAULT_ROUNDS = 5;
+
+	/**
+	 * the number of calls per round
+	 */
+	private static final int CALLS = 1000000;
+
+	/**
+	 * An AllDifferentConstraint that collects the fixed values in a new HashSet on every check
+	 */
+	private static class HashSetAllDifferentConstraint extends AllDifferentConstraint {
+
+		/**
+		 * Creates a HashSetAllDifferentConstraint for the given variables
+		 * @param variables the list of all involved variables
+		 */
+		HashSetAllDifferentConstraint(Variable ... variables) {
+			super(variables);
+		}
+
+		/**
+		 * Checks the fixed values with a HashSet
+		 * @see AllDifferentConstraint#holds(SolverState)
+		 */
+		@Override
+		public satisfaction holds(SolverState state) {
+			HashSet<Integer> values = new HashSet<Integer>();
+			boolean hadNonFixVariable = false;
+			for (Variable var : getVariables()) {
+				if (state.isTiedToValue(var)) {
+					if (!values.add(state.getTiedValue(var))) return satisfaction.FALSE;
+				} else if (state.getDomain(var).size() == 1) {
+					if (!values.add(state.getDomain(var).min())) return satisfaction.FALSE;
+				} else hadNonFixVariable = true;
+			}
+			return hadNonFixVariable ? satisfaction.DELAY : satisfaction.TRUE;
+		}
+	}
+
+	/**
+	 * Runs the benchmark
+	 * @param args optionally the number of rounds
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+		int[] sizes = {9, 100};
+		Constraint.satisfaction[] expected = Constraint.satisfaction.values();
+		for (int n : sizes) {
+			for (Constraint.satisfaction result : expected) {
+				for (int hashSet = 1; hashSet >= 0; hashSet--) {
+					ConstraintSet cs = new ConstraintSet();
+					Variable[] vars = variables(cs, n);
+					AllDifferentConstraint c = hashSet == 1 ? new HashSetAllDifferentConstraint(vars) : new AllDifferentConstraint(vars);
+					cs.add(c);
+					SolverState state = new SolverState(cs);
+					tie(state, vars, result);
+					if (c.holds(state) != result) throw new IllegalStateException(c + " does not give " + result);
+					long best = Long.MAX_VALUE;
+					// the results are summed up and checked, so the calls can't be left out
+					long sum = 0;
+					for (int round = 0; round < rounds; round++) {
+						long start = System.nanoTime();
+						for (int i = 0; i < CALLS; i++) sum += c.holds(state).ordinal();
+						best = Math.min(best, System.nanoTime() - start);
+					}
+					if (sum != (long)rounds * CALLS * result.ordinal()) throw new IllegalStateException(c + " changed its result");
+					System.out.printf("%3d variables, %-7s %-5s: %8.1f ns per call%n",
+							n, hashSet == 1 ? "HashSet" : "mask", result, (double)best / CALLS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds n variables with the values from 1 to n
+	 * @param cs the constraint set
+	 * @param n the number of variables
+	 * @return the variables
+	 */
+	private static Variable[] variables(ConstraintSet cs, int n) {
+		Variable[] vars = new Variable[n];
+		try {
+			for (int i = 0; i < n; i++) vars[i] = cs.addVariable("x" + i, 1, n);
+		} catch (VariableNameExistsException e) {
+			throw new IllegalStateException(e);
+		}
+		return vars;
+	}
+
+	/**
+	 * Ties the variables so the constraint gives the expected result
+	 * @param state the state of the search
+	 * @param vars the variables of the constraint
+	 * @param result the result the check should give
+	 */
+	private static void tie(SolverState state, Variable[] vars, Constraint.satisfaction result) {
+		for (int i = 0; i < vars.length - 1; i++) state.tieToValue(vars[i], i + 1);
+		Variable last = vars[vars.length - 1];
+		if (result == Constraint.satisfaction.TRUE) state.tieToValue(last, vars.length);
+		else if (result == Constraint.satisfaction.FALSE) state.tieToValue(last, 1);
+	}
+}
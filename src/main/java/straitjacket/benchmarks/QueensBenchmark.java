@@ -0,0 +1,172 @@
+package straitjacket.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import straitjacket.ArcConsistency;
+import straitjacket.Backtracker;
+import straitjacket.Constraint;
+import straitjacket.ConstraintSet;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+import straitjacket.VariableNameExistsException;
+import straitjacket.constraints.AllDifferentConstraint;
+import straitjacket.constraints.NeqConstraint;
+import straitjacket.strategies.StrategyFactory.AvailableStrategies;
+
+/**
+ * Compares the constant time propagation of binary NeqConstraints with the generic
+ * revision of pairs of values on the n queens problem. For 8 and 10 queens all solutions 
+ * are searched with forward checking and the first fail strategy. The search tree of 100 queens
+ * is far too big for the chronological backtracking, so there every queen is tied to the middle row
+ * in turn and one forward check is run from the root instead.
+ * Both models are the same, the generic one only replaces the propagation of the diagonals.
+ * The program prints the best time of a number of rounds and the search nodes 
+ * (or forward checks) per millisecond. The times include setting up the SolverState,
+ * which compiles the model.
+ * Usage: QueensBenchmark [rounds]
+ */
+public class QueensBenchmark {
+
+	/**
+	 * the number of rounds if none is given
+	 */
+	private static final int DEFAULT_ROUNDS = 5;
+	
+	/**
+	 * A NeqConstraint revised like any other binary constraint, value by value 
+	 * against the domain of the other variable
+	 */
+	private static class PairwiseNeqConstraint extends NeqConstraint {
+		
+		/**
+		 * Creates a PairwiseNeqConstraint with the given parameter
+		 * @param name a name for the Constraint
+		 * @param variables list of the involved variables
+		 * @param coefficients list of the coefficients for the variables
+		 * @param rhs the value for the rhs
+		 */
+		PairwiseNeqConstraint(String name, ArrayList<Variable> variables, ArrayList<Integer> coefficients, int rhs) {
+			super(name, variables, coefficients, rhs);
+		}
+		
+		/**
+		 * Revises both directions if both variables are free
+		 * @see NeqConstraint#makeArcConsistent(SolverState)
+		 */
+		@Override
+		public Collection<Variable> makeArcConsistent(SolverState state) {
+			ArrayList<Variable> changedVars = new ArrayList<Variable>();
+			Collection<Variable> free = getFreeVariables(state);
+			if (free.size() == 2) {
+				Iterator<Variable> it = free.iterator();
+				Variable cVar = it.next();
+				Variable oVar = it.next();
+				if (revise(state, cVar, oVar)) changedVars.add(cVar);
+				if (revise(state, oVar, cVar)) changedVars.add(oVar);
+			} else if (free.size() == 1) {
+				// the other queen is tied, so the free one loses the value on the diagonal
+				return super.makeArcConsistent(state);
+			}
+			return changedVars;
+		}
+	}
+	
+	/**
+	 * Runs the benchmark
+	 * @param args optionally the number of rounds
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+		// the Backtracker prints every solution it finds
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		int[] sizes = {8, 10, 100};
+		for (int n : sizes) {
+			boolean search = n <= 10;
+			for (int generic = 1; generic >= 0; generic--) {
+				long best = Long.MAX_VALUE;
+				long nodes = 0;
+				int solutions = 0;
+				for (int round = 0; round < rounds; round++) {
+					ConstraintSet cs = queens(n, generic == 1);
+					long start = System.nanoTime();
+					SolverState state = new SolverState(cs);
+					if (search) {
+						Backtracker.allSolutionsForwardCheck(state, AvailableStrategies.FIRST_FAIL);
+						nodes = state.getIterations();
+						solutions = state.getAllFoundSolutions().size();
+					} else {
+						nodes = forwardCheckEveryQueen(state);
+					}
+					best = Math.min(best, System.nanoTime() - start);
+				}
+				double ms = best / 1e6;
+				out.printf("%3d queens, %-8s %s: %5d solutions, %7d %s, %9.2f ms, %9.2f per ms%n",
+						n, generic == 1 ? "pairwise" : "O(1)", search ? "search" : "root  ",
+						solutions, nodes, search ? "nodes" : "checks", ms, nodes / ms);
+			}
+		}
+		System.setOut(out);
+	}
+	
+	/**
+	 * Ties every queen to the middle row in turn and propagates, the domains are restored after each check
+	 * @param state the state of the search
+	 * @return the number of forward checks
+	 */
+	private static long forwardCheckEveryQueen(SolverState state) {
+		int n = state.getModel().getNumberOfVariables();
+		for (int i = 0; i < n; i++) {
+			Variable queen = state.getModel().getVariable(i);
+			state.pushAllDomains();
+			state.tieToValue(queen, n / 2);
+			if (ArcConsistency.ac3(state, queen) == Constraint.satisfaction.FALSE) {
+				throw new IllegalStateException("a single queen can not be inconsistent");
+			}
+			state.untie(queen);
+			state.popAllDomains();
+		}
+		return n;
+	}
+	
+	/**
+	 * Generates the n queens problem, one variable per column holding the row of its queen
+	 * @param n the number of queens
+	 * @param pairwise true to revise the diagonals value by value
+	 * @return the constraint set
+	 */
+	private static ConstraintSet queens(int n, boolean pairwise) {
+		ConstraintSet cs = new ConstraintSet();
+		try {
+			Variable[] queens = new Variable[n];
+			for (int i = 0; i < n; i++) queens[i] = cs.addVariable("q" + i, 0, n - 1);
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					ArrayList<Variable> vars = new ArrayList<Variable>();
+					ArrayList<Integer> coeffs = new ArrayList<Integer>();
+					vars.add(queens[i]);
+					coeffs.add(-1);
+					vars.add(queens[j]);
+					coeffs.add(1);
+					if (pairwise) {
+						cs.add(new PairwiseNeqConstraint("q_"+i+"_"+j+"_diagup", vars, coeffs, j-i));
+						cs.add(new PairwiseNeqConstraint("q_"+i+"_"+j+"_diagdown", vars, coeffs, i-j));
+					} else {
+						cs.add(new NeqConstraint("q_"+i+"_"+j+"_diagup", vars, coeffs, j-i));
+						cs.add(new NeqConstraint("q_"+i+"_"+j+"_diagdown", vars, coeffs, i-j));
+					}
+				}
+			}
+			cs.add(new AllDifferentConstraint(queens));
+		} catch (VariableNameExistsException e) {
+			throw new IllegalStateException(e);
+		}
+		return cs;
+	}
+}
@@ -0,0 +1,106 @@
+package straitjacket.benchmarks;
+
+import java.util.Arrays;
+
+import straitjacket.ArcConsistency;
+import straitjacket.CSPGenerator;
+import straitjacket.CompiledModel;
+import straitjacket.Constraint;
+import straitjacket.ConstraintSet;
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+
+/**
+ * Runs the same forward checks again and again on the problems of the CSPGenerator.
+ * For every variable of a problem the variable is tied to its smallest value, ac3 is run 
+ * for it and the number of removed values is counted, then the domains are restored.
+ * As the propagation must not change the model, every round has to remove exactly the same
+ * values as the first one. The program prints the pruning and the time per round and exits
+ * with status 1 if a round pruned differently.
+ * Usage: RepeatedPropagationBenchmark [rounds]
+ */
+public class RepeatedPropagationBenchmark {
+
+	/**
+	 * the number of rounds if none is given
+	 */
+	private static final int DEFAULT_ROUNDS = 50;
+	
+	/**
+	 * Runs the benchmark
+	 * @param args optionally the number of rounds
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+		boolean constant = true;
+		for (CSPGenerator.CSPs csp : CSPGenerator.CSPs.values()) {
+			ConstraintSet cs = csp.getCS();
+			SolverState state = new SolverState(cs);
+			CompiledModel model = state.getModel();
+			
+			long[] first = null;
+			long start = System.nanoTime();
+			for (int round = 0; round < rounds; round++) {
+				long[] pruned = propagateEveryVariable(state, model);
+				if (first == null) first = pruned;
+				else if (!Arrays.equals(first, pruned)) {
+					System.out.println(csp + ": round " + (round+1) + " pruned " + sum(pruned) + " values instead of " + sum(first));
+					constant = false;
+					break;
+				}
+			}
+			long time = System.nanoTime() - start;
+			System.out.printf("%-24s %6d values pruned per round, %8.3f ms per round%n", 
+					csp, sum(first), time / 1e6 / rounds);
+		}
+		System.out.println(constant ? "pruning constant over " + rounds + " rounds" : "pruning changed between rounds");
+		if (!constant) System.exit(1);
+	}
+	
+	/**
+	 * Ties every variable of the model in turn to its smallest value and propagates
+	 * @param state the state to propagate in, it is unchanged afterwards
+	 * @param model the model of the state
+	 * @return for every variable the number of values ac3 removed
+	 */
+	private static long[] propagateEveryVariable(SolverState state, CompiledModel model) {
+		long[] pruned = new long[model.getNumberOfVariables()];
+		for (int i = 0; i < model.getNumberOfVariables(); i++) {
+			Variable var = model.getVariable(i);
+			Domain domain = state.getDomain(var);
+			if (domain.isEmpty()) continue;
+			long before = totalSize(state, model);
+			state.pushAllDomains();
+			state.tieToValue(var, domain.min());
+			if (ArcConsistency.ac3(state, var) == Constraint.satisfaction.FALSE) pruned[i] = -1;
+			else pruned[i] = before - totalSize(state, model);
+			state.untie(var);
+			state.popAllDomains();
+		}
+		return pruned;
+	}
+	
+	/**
+	 * Sums up the sizes of all domains of the model
+	 * @param state the state holding the domains
+	 * @param model the model
+	 * @return the number of values left
+	 */
+	private static long totalSize(SolverState state, CompiledModel model) {
+		long size = 0;
+		for (int i = 0; i < model.getNumberOfVariables(); i++) size += state.getDomain(model.getVariable(i)).size();
+		return size;
+	}
+	
+	/**
+	 * Sums up the given numbers
+	 * @param values the numbers
+	 * @return the sum
+	 */
+	private static long sum(long[] values) {
+		long sum = 0;
+		for (long v : values) sum += v;
+		return sum;
+	}
+}
@@ -0,0 +1,315 @@
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+
+/**
+ * The bounds consistency filtering of an AllDifferentConstraint in one SolverState, after
+ * Lopez-Ortiz, Quimper, Tromp and van Beek: "A fast and simple algorithm for bounds consistency
+ * of the alldifferent constraint". Every variable is seen as the interval between the smallest
+ * and the largest value of its domain. One pass sorts the intervals and then finds the Hall
+ * intervals from left to right to raise the lower bounds and from right to left to lower the
+ * upper bounds, with union find like path compression, so it costs O(n log n) instead of the
+ * matching of the full filtering. Holes inside the domains are not looked at.
+ * All arrays are allocated once, a call does not allocate anything.
+ */
+class AllDifferentBounds {
+
+	/**
+	 * the number of variables
+	 */
+	private final int n;
+
+	/**
+	 * the lower bound of every variable
+	 */
+	private final long[] lb;
+
+	/**
+	 * the upper bound of every variable
+	 */
+	private final long[] ub;
+
+	/**
+	 * the variables sorted by their lower bound, each entry holds the bound in the high
+	 * and the index of the variable in the low 32 bits
+	 */
+	private final long[] minSorted;
+
+	/**
+	 * the variables sorted by their upper bound, packed like minSorted
+	 */
+	private final long[] maxSorted;
+
+	/**
+	 * for every variable the rank of its lower bound in bounds
+	 */
+	private final int[] minRank;
+
+	/**
+	 * for every variable the rank of its upper bound plus one in bounds
+	 */
+	private final int[] maxRank;
+
+	/**
+	 * all lower bounds and upper bounds plus one, sorted without duplicates and framed by two sentinels
+	 */
+	private final long[] bounds;
+
+	/**
+	 * the number of distinct entries of bounds without the sentinels
+	 */
+	private int nb;
+
+	/**
+	 * the tree links between the bounds for the path compression
+	 */
+	private final int[] t;
+
+	/**
+	 * the links to the Hall intervals found so far
+	 */
+	private final int[] h;
+
+	/**
+	 * the capacity left between two bounds
+	 */
+	private final long[] d;
+
+	/**
+	 * true for the variables already in changed
+	 */
+	private final boolean[] isChanged;
+
+	/**
+	 * the variables changed by the last call
+	 */
+	private final ArrayList<Variable> changed = new ArrayList<Variable>();
+
+	/**
+	 * Creates the filtering for a constraint with n variables
+	 * @param n the number of variables of the constraint
+	 */
+	AllDifferentBounds(int n) {
+		this.n = n;
+		this.lb = new long[n];
+		this.ub = new long[n];
+		this.minSorted = new long[n];
+		this.maxSorted = new long[n];
+		this.minRank = new int[n];
+		this.maxRank = new int[n];
+		this.bounds = new long[2 * n + 2];
+		this.t = new int[2 * n + 2];
+		this.h = new int[2 * n + 2];
+		this.d = new long[2 * n + 2];
+		this.isChanged = new boolean[n];
+	}
+
+	/**
+	 * Narrows the bounds of the variables until they are bounds consistent. A tied variable is
+	 * seen as the interval holding only its tied value, its domain is not changed. If the intervals
+	 * leave no solution, all domains are cleared.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param scope the variables of the constraint
+	 * @return the variables whose domains have changed, null if none has changed. The list
+	 *         is reused by the next call.
+	 */
+	ArrayList<Variable> filter(SolverState state, Variable[] scope) {
+		changed.clear();
+		Arrays.fill(isChanged, false);
+		boolean narrowed = n > 0;
+		while (narrowed) {
+			for (int i = 0; i < n; i++) {
+				Domain domain = state.getDomain(scope[i]);
+				if (state.isTiedToValue(scope[i])) {
+					lb[i] = ub[i] = state.getTiedValue(scope[i]);
+				} else if (domain.isEmpty()) {
+					// somebody else has already failed
+					return changed.isEmpty() ? null : changed;
+				} else {
+					lb[i] = domain.min();
+					ub[i] = domain.max();
+				}
+			}
+			sort();
+			if (!filterLower() || !filterUpper()) {
+				// no solution below this node, so all domains can be emptied
+				for (int i = 0; i < n; i++) {
+					if (!state.getDomain(scope[i]).isEmpty()) markChanged(scope, i);
+					state.getDomain(scope[i]).clear();
+				}
+				return changed;
+			}
+			// removing a bound may uncover a hole of the domain, so the bounds may move again
+			narrowed = false;
+			for (int i = 0; i < n; i++) {
+				if (state.isTiedToValue(scope[i])) continue;
+				Domain domain = state.getDomain(scope[i]);
+				boolean removed = lb[i] > domain.min() && domain.removeBelow((int)lb[i]);
+				removed |= ub[i] < domain.max() && domain.removeAbove((int)ub[i]);
+				if (removed) {
+					markChanged(scope, i);
+					if (domain.isEmpty()) return changed;
+					narrowed = true;
+				}
+			}
+		}
+		return changed.isEmpty() ? null : changed;
+	}
+
+	/**
+	 * Adds a variable to the changed ones, if it is not in there yet
+	 * @param scope the variables of the constraint
+	 * @param i the index of the variable
+	 */
+	private void markChanged(Variable[] scope, int i) {
+		if (!isChanged[i]) {
+			isChanged[i] = true;
+			changed.add(scope[i]);
+		}
+	}
+
+	/**
+	 * Sorts the variables by their bounds and sets up the ranks of the bounds
+	 */
+	private void sort() {
+		for (int i = 0; i < n; i++) {
+			minSorted[i] = (lb[i] << 32) | i;
+			maxSorted[i] = (ub[i] << 32) | i;
+		}
+		Arrays.sort(minSorted);
+		Arrays.sort(maxSorted);
+		long min = lb[(int)minSorted[0]];
+		long max = ub[(int)maxSorted[0]] + 1;
+		long last = min - 2;
+		nb = 0;
+		bounds[0] = last;
+		int i = 0;
+		int j = 0;
+		while (true) {
+			if (i < n && min <= max) {
+				if (min != last) bounds[++nb] = last = min;
+				minRank[(int)minSorted[i]] = nb;
+				if (++i < n) min = lb[(int)minSorted[i]];
+			} else {
+				if (max != last) bounds[++nb] = last = max;
+				maxRank[(int)maxSorted[j]] = nb;
+				if (++j == n) break;
+				max = ub[(int)maxSorted[j]] + 1;
+			}
+		}
+		bounds[nb+1] = bounds[nb] + 2;
+	}
+
+	/**
+	 * Raises the lower bounds of the variables above the Hall intervals below them
+	 * @return false if there are more variables than values in some interval
+	 */
+	private boolean filterLower() {
+		for (int i = 1; i <= nb + 1; i++) {
+			t[i] = h[i] = i - 1;
+			d[i] = bounds[i] - bounds[i-1];
+		}
+		for (int i = 0; i < n; i++) {
+			int v = (int)maxSorted[i];
+			int x = minRank[v];
+			int y = maxRank[v];
+			int z = pathMax(t, x + 1);
+			int j = t[z];
+			if (--d[z] == 0) {
+				t[z] = z + 1;
+				z = pathMax(t, t[z]);
+				t[z] = j;
+			}
+			pathSet(t, x + 1, z, z);
+			if (d[z] < bounds[z] - bounds[y]) return false;
+			if (h[x] > x) {
+				int w = pathMax(h, h[x]);
+				lb[v] = bounds[w];
+				pathSet(h, x, w, w);
+			}
+			if (d[z] == bounds[z] - bounds[y]) {
+				pathSet(h, h[y], j - 1, y);
+				h[y] = j - 1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lowers the upper bounds of the variables below the Hall intervals above them
+	 * @return false if there are more variables than values in some interval
+	 */
+	private boolean filterUpper() {
+		for (int i = 0; i <= nb; i++) {
+			t[i] = h[i] = i + 1;
+			d[i] = bounds[i+1] - bounds[i];
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			int v = (int)minSorted[i];
+			int x = maxRank[v];
+			int y = minRank[v];
+			int z = pathMin(t, x - 1);
+			int j = t[z];
+			if (--d[z] == 0) {
+				t[z] = z - 1;
+				z = pathMin(t, t[z]);
+				t[z] = j;
+			}
+			pathSet(t, x - 1, z, z);
+			if (d[z] < bounds[y] - bounds[z]) return false;
+			if (h[x] < x) {
+				int w = pathMin(h, h[x]);
+				ub[v] = bounds[w] - 1;
+				pathSet(h, x, w, w);
+			}
+			if (d[z] == bounds[y] - bounds[z]) {
+				pathSet(h, h[y], j + 1, y);
+				h[y] = j + 1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lets every link on the path from start to end point to the given index
+	 * @param links the links
+	 * @param start the first index of the path
+	 * @param end the last index of the path
+	 * @param to the new target of the links
+	 */
+	private static void pathSet(int[] links, int start, int end, int to) {
+		int k = start;
+		while (k != end) {
+			int next = links[k];
+			links[k] = to;
+			k = next;
+		}
+	}
+
+	/**
+	 * Follows the links downwards as long as they lead to a smaller index
+	 * @param links the links
+	 * @param i the index to start at
+	 * @return the index the path ends at
+	 */
+	private static int pathMin(int[] links, int i) {
+		while (links[i] < i) i = links[i];
+		return i;
+	}
+
+	/**
+	 * Follows the links upwards as long as they lead to a bigger index
+	 * @param links the links
+	 * @param i the index to start at
+	 * @return the index the path ends at
+	 */
+	private static int pathMax(int[] links, int i) {
+		while (links[i] > i) i = links[i];
+		return i;
+	}
+}
@@ -0,0 +1,600 @@
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+import straitjacket.domains.DomainFactory;
+
+/**
+ * The variable value graph of an AllDifferentConstraint in one SolverState, with the filtering
+ * of Regin working on it. The variables are the nodes 0 to n-1 (in the order of the scope),
+ * the values currently possible for at least one of them get the nodes from n on.
+ * All nodes are plain int indices into arrays, which are kept and only grown between the calls,
+ * so the filtering does not allocate anything once the arrays are big enough.
+ *
+ * The matching found by a call is kept for the next one. It is not restored when backtracking.
+ * Backtracking only puts values back into the domains, so every pair of the matching is still an
+ * edge of the graph afterwards and the matching stays valid. Only the pairs whose value has been
+ * removed since have to be matched again.
+ */
+class AllDifferentGraph {
+
+	/**
+	 * the number of variables
+	 */
+	private final int n;
+
+	/**
+	 * for every variable the value it was matched to by the last call, Domain.NO_VALUE if none
+	 */
+	private final int[] matchedValues;
+
+	/**
+	 * the stamp of the trail level the last filtering ran on, -1 if there is none
+	 */
+	private int stamp = -1;
+
+	/**
+	 * for every variable the size of its domain after the last filtering
+	 */
+	private final int[] sizes;
+
+	/**
+	 * for every variable its tied value at the last filtering
+	 */
+	private final int[] ties;
+
+	/**
+	 * the number of value nodes of the current graph
+	 */
+	private int m;
+
+	/**
+	 * the values of the value nodes, values[j] belongs to node n+j
+	 */
+	private int[] values = new int[16];
+
+	/**
+	 * true if value nodes are looked up in valueIndex, false if values is sorted and searched
+	 */
+	private boolean dense;
+
+	/**
+	 * the smallest value of the current graph
+	 */
+	private int lo;
+
+	/**
+	 * for every value from lo on its index in values, -1 if it is no node. Outside of
+	 * a call every entry is -1.
+	 */
+	private int[] valueIndex = new int[0];
+
+	/**
+	 * where the values of every variable start in edges, one more entry for the end
+	 */
+	private final int[] edgeStart;
+
+	/**
+	 * the value indices of all variables, the edges of the graph
+	 */
+	private int[] edges = new int[16];
+
+	/**
+	 * where the variables of every value start in reverseEdges, one more entry for the end
+	 */
+	private int[] reverseStart = new int[17];
+
+	/**
+	 * the variables of all values
+	 */
+	private int[] reverseEdges = new int[16];
+
+	/**
+	 * for every variable the index of its matched value, -1 if it is not matched
+	 */
+	private final int[] varMatch;
+
+	/**
+	 * for every value the variable it is matched to, -1 if it is free
+	 */
+	private int[] valMatch = new int[16];
+
+	/**
+	 * the breadth first levels of Hopcroft & Karp for the variables
+	 */
+	private final int[] dist;
+
+	/**
+	 * for every variable the next edge the depth first search of Hopcroft & Karp tries
+	 */
+	private final int[] next;
+
+	/**
+	 * the queue of the breadth first searches, variables for Hopcroft & Karp, values for the alternating paths
+	 */
+	private int[] queue = new int[16];
+
+	/**
+	 * the path of the depth first search of Hopcroft & Karp
+	 */
+	private final int[] path;
+
+	/**
+	 * the order Tarjan's algorithm reached the nodes in, -1 if not reached yet
+	 */
+	private int[] index = new int[32];
+
+	/**
+	 * the smallest index reachable from the subtree of each node
+	 */
+	private int[] low = new int[32];
+
+	/**
+	 * the strongly connected component of each node
+	 */
+	private int[] component = new int[32];
+
+	/**
+	 * the nodes whose component is still open
+	 */
+	private int[] open = new int[32];
+
+	/**
+	 * true for the nodes on the open stack
+	 */
+	private boolean[] isOpen = new boolean[32];
+
+	/**
+	 * the nodes of the depth first search of Tarjan's algorithm
+	 */
+	private int[] callNodes = new int[32];
+
+	/**
+	 * for the nodes of the depth first search the next successor to look at
+	 */
+	private int[] callNext = new int[32];
+
+	/**
+	 * true for the values from which an alternating path leads to a free value
+	 */
+	private boolean[] reachesFree = new boolean[16];
+
+	/**
+	 * the variables changed by the last call
+	 */
+	private final ArrayList<Variable> changed = new ArrayList<Variable>();
+
+	/**
+	 * Creates the graph for a constraint with n variables, nothing matched yet
+	 * @param n the number of variables of the constraint
+	 */
+	AllDifferentGraph(int n) {
+		this.n = n;
+		this.matchedValues = new int[n];
+		this.sizes = new int[n];
+		this.ties = new int[n];
+		this.edgeStart = new int[n + 1];
+		this.varMatch = new int[n];
+		this.dist = new int[n];
+		this.next = new int[n];
+		this.path = new int[n];
+		Arrays.fill(matchedValues, Domain.NO_VALUE);
+	}
+
+	/**
+	 * Removes every value that is not part of any maximum matching of the variable value graph.
+	 * If no matching covers all variables, all domains are cleared.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param scope the variables of the constraint
+	 * @return the variables whose domains have changed, null if none has changed. The list
+	 *         is reused by the next call.
+	 */
+	ArrayList<Variable> filter(SolverState state, Variable[] scope) {
+		if (isUnchanged(state, scope)) return null;
+		changed.clear();
+		build(state, scope);
+		boolean matched = m >= n && match(state, scope);
+		clearValueIndex();
+		if (!matched) {
+			// no solution below this node, so all domains can be emptied
+			for (Variable var : scope) {
+				if (!state.getDomain(var).isEmpty()) changed.add(var);
+				state.getDomain(var).clear();
+			}
+			stamp = -1;
+			return changed;
+		}
+
+		// an edge that is not in the matching is part of another maximum matching, if it lies on an
+		// alternating cycle (both ends in the same strongly connected component) or on an alternating
+		// path ending in a free value
+		findComponents();
+		findPathsToFreeValues();
+		for (int i = 0; i < n; i++) {
+			if (state.isTiedToValue(scope[i])) continue;
+			Domain domain = state.getDomain(scope[i]);
+			boolean removed = false;
+			for (int e = edgeStart[i]; e < edgeStart[i+1]; e++) {
+				int j = edges[e];
+				if (j != varMatch[i] && component[i] != component[n + j] && !reachesFree[j]) {
+					removed |= domain.remove(values[j]);
+				}
+			}
+			if (removed) changed.add(scope[i]);
+		}
+		saveDomains(state, scope);
+		return changed.isEmpty() ? null : changed;
+	}
+
+	/**
+	 * Checks whether the variables still have exactly the values they had after the last filtering.
+	 * While a trail level is open its domains only shrink, and closing the levels opened since
+	 * gives back the domains as they were when those were opened. So equal sizes on the same
+	 * level mean equal domains.
+	 * @param state the state of the search
+	 * @param scope the variables of the constraint
+	 * @return true if nothing has changed, so the last filtering still holds
+	 */
+	private boolean isUnchanged(SolverState state, Variable[] scope) {
+		if (stamp != state.getTrail().getStamp()) return false;
+		for (int i = 0; i < n; i++) {
+			if (state.getDomain(scope[i]).size() != sizes[i] || state.getTiedValue(scope[i]) != ties[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers the domains the filtering has left
+	 * @param state the state of the search
+	 * @param scope the variables of the constraint
+	 */
+	private void saveDomains(SolverState state, Variable[] scope) {
+		stamp = state.getTrail().getStamp();
+		for (int i = 0; i < n; i++) {
+			sizes[i] = state.getDomain(scope[i]).size();
+			ties[i] = state.getTiedValue(scope[i]);
+		}
+	}
+
+	/**
+	 * Sets up the value nodes and the edges of the current domains, a tied variable only
+	 * gets an edge to its tied value
+	 * @param state the state of the search
+	 * @param scope the variables of the constraint
+	 */
+	private void build(SolverState state, Variable[] scope) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		int total = 0;
+		for (Variable var : scope) {
+			Domain domain = state.getDomain(var);
+			if (state.isTiedToValue(var)) {
+				min = Math.min(min, state.getTiedValue(var));
+				max = Math.max(max, state.getTiedValue(var));
+				total++;
+			} else if (!domain.isEmpty()) {
+				min = Math.min(min, domain.min());
+				max = Math.max(max, domain.max());
+				total += domain.size();
+			}
+		}
+		edges = ensure(edges, total);
+		values = ensure(values, total);
+		m = 0;
+		lo = min;
+		// a lookup table for the values, unless they are spread too far
+		dense = total == 0 || (long)max - min < Math.max(DomainFactory.MAX_DENSE_SPAN, 4L * total);
+		if (dense) {
+			if (total > 0 && valueIndex.length < max - min + 1) {
+				valueIndex = new int[Math.max(max - min + 1, 2 * valueIndex.length)];
+				Arrays.fill(valueIndex, -1);
+			}
+		} else {
+			// all values sorted without duplicates
+			for (int i = 0; i < n; i++) m = addValues(state, scope[i], values, m);
+			Arrays.sort(values, 0, m);
+			int distinct = 0;
+			for (int j = 0; j < m; j++) {
+				if (j == 0 || values[j] != values[distinct-1]) values[distinct++] = values[j];
+			}
+			m = distinct;
+		}
+
+		// the edges of the variables, the dense lookup creates the value nodes on the way
+		int e = 0;
+		for (int i = 0; i < n; i++) {
+			edgeStart[i] = e;
+			int end = addValues(state, scope[i], edges, e);
+			for (; e < end; e++) edges[e] = dense ? createIndex(edges[e]) : Arrays.binarySearch(values, 0, m, edges[e]);
+		}
+		edgeStart[n] = e;
+
+		// the variables of every value
+		reverseStart = ensure(reverseStart, m + 1);
+		reverseEdges = ensure(reverseEdges, e);
+		Arrays.fill(reverseStart, 0, m + 1, 0);
+		for (int k = 0; k < e; k++) reverseStart[edges[k]]++;
+		for (int j = 1; j < m; j++) reverseStart[j] += reverseStart[j-1];
+		reverseStart[m] = e;
+		// every value counts down from its end to its start while its variables are filled in
+		for (int i = 0; i < n; i++) {
+			for (int k = edgeStart[i]; k < edgeStart[i+1]; k++) reverseEdges[--reverseStart[edges[k]]] = i;
+		}
+	}
+
+	/**
+	 * Writes the possible values of a variable into the given array
+	 * @param state the state of the search
+	 * @param var the variable
+	 * @param target the array to write into
+	 * @param offset the index of the first value to write
+	 * @return the index after the last written value
+	 */
+	private static int addValues(SolverState state, Variable var, int[] target, int offset) {
+		if (state.isTiedToValue(var)) {
+			target[offset++] = state.getTiedValue(var);
+		} else {
+			Domain domain = state.getDomain(var);
+			// the values are sorted where needed, so any order will do
+			for (int c = domain.firstCursor(); c != Domain.NO_VALUE; c = domain.nextCursor(c)) target[offset++] = domain.valueAt(c);
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the index of the node of the given value, a new node is created for an unknown value
+	 * @param value a value of the current graph
+	 * @return the index of its node
+	 */
+	private int createIndex(int value) {
+		int j = valueIndex[value - lo];
+		if (j < 0) {
+			j = m++;
+			values[j] = value;
+			valueIndex[value - lo] = j;
+		}
+		return j;
+	}
+
+	/**
+	 * Returns the index of the node of the given value
+	 * @param value a value
+	 * @return the index of its node, a negative number if it is no node
+	 */
+	private int indexOf(int value) {
+		if (!dense) return Arrays.binarySearch(values, 0, m, value);
+		return value < lo || (long)value - lo >= valueIndex.length ? -1 : valueIndex[value - lo];
+	}
+
+	/**
+	 * Resets the dense lookup table for the next call
+	 */
+	private void clearValueIndex() {
+		if (dense) {
+			for (int j = 0; j < m; j++) valueIndex[values[j] - lo] = -1;
+		}
+	}
+
+	/**
+	 * Finds a matching covering all variables. The pairs of the last matching which are still
+	 * edges are kept, the other variables are matched greedily and then by Hopcroft & Karp.
+	 * @param state the state of the search
+	 * @param scope the variables of the constraint
+	 * @return false if there is no matching covering all variables
+	 */
+	private boolean match(SolverState state, Variable[] scope) {
+		valMatch = ensure(valMatch, m);
+		Arrays.fill(valMatch, 0, m, -1);
+		int unmatched = 0;
+		for (int i = 0; i < n; i++) {
+			varMatch[i] = -1;
+			int value = matchedValues[i];
+			boolean valid = state.isTiedToValue(scope[i]) ? value == state.getTiedValue(scope[i])
+					: value != Domain.NO_VALUE && state.getDomain(scope[i]).contains(value);
+			if (valid) {
+				int j = indexOf(value);
+				varMatch[i] = j;
+				valMatch[j] = i;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (varMatch[i] >= 0) continue;
+			for (int e = edgeStart[i]; e < edgeStart[i+1] && varMatch[i] < 0; e++) {
+				if (valMatch[edges[e]] < 0) {
+					varMatch[i] = edges[e];
+					valMatch[edges[e]] = i;
+				}
+			}
+			if (varMatch[i] < 0) unmatched++;
+		}
+		if (unmatched > 0 && maxCardinalityMatching() < unmatched) return false;
+		for (int i = 0; i < n; i++) matchedValues[i] = values[varMatch[i]];
+		return true;
+	}
+
+	/**
+	 * Augments the matching along shortest augmenting paths until it is cardinality maximal (Hopcroft & Karp)
+	 * @return the number of augmentations
+	 */
+	private int maxCardinalityMatching() {
+		int augmentations = 0;
+		queue = ensure(queue, n);
+		while (true) {
+			// the levels of the variables on the shortest alternating paths from the free variables
+			int head = 0;
+			int tail = 0;
+			for (int i = 0; i < n; i++) {
+				if (varMatch[i] < 0) {
+					dist[i] = 0;
+					queue[tail++] = i;
+				} else dist[i] = Integer.MAX_VALUE;
+			}
+			int freeDist = Integer.MAX_VALUE;
+			while (head < tail) {
+				int x = queue[head++];
+				if (dist[x] >= freeDist) continue;
+				for (int e = edgeStart[x]; e < edgeStart[x+1]; e++) {
+					int y = valMatch[edges[e]];
+					if (y < 0) {
+						if (freeDist == Integer.MAX_VALUE) freeDist = dist[x] + 1;
+					} else if (dist[y] == Integer.MAX_VALUE) {
+						dist[y] = dist[x] + 1;
+						queue[tail++] = y;
+					}
+				}
+			}
+			// the matching is cardinality maximal, if no free value can be reached
+			if (freeDist == Integer.MAX_VALUE) return augmentations;
+
+			System.arraycopy(edgeStart, 0, next, 0, n);
+			for (int i = 0; i < n; i++) {
+				if (varMatch[i] < 0 && augment(i, freeDist)) augmentations++;
+			}
+		}
+	}
+
+	/**
+	 * Searches a shortest augmenting path from the given free variable through the levels and flips it.
+	 * Variables that lead to no free value are taken out of the levels, so no variable is searched
+	 * twice in one phase.
+	 * @param root a free variable
+	 * @param freeDist the length of the shortest augmenting paths of this phase
+	 * @return true if the matching has been augmented
+	 */
+	private boolean augment(int root, int freeDist) {
+		int top = 0;
+		path[top++] = root;
+		while (top > 0) {
+			int x = path[top-1];
+			if (next[x] == edgeStart[x+1]) {
+				dist[x] = Integer.MAX_VALUE;
+				top--;
+				continue;
+			}
+			int y = valMatch[edges[next[x]]];
+			if (y < 0) {
+				if (dist[x] + 1 == freeDist) {
+					// every variable on the path takes the value its edge points to
+					for (int k = top - 1; k >= 0; k--) {
+						int v = path[k];
+						int j = edges[next[v]];
+						varMatch[v] = j;
+						valMatch[j] = v;
+					}
+					return true;
+				}
+				next[x]++;
+			} else if (dist[y] == dist[x] + 1) {
+				path[top++] = y;
+			} else next[x]++;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the strongly connected components of the graph with Tarjan's algorithm. The edges of
+	 * the matching lead from the value to the variable, all other edges from the variable to the value.
+	 */
+	private void findComponents() {
+		int nodes = n + m;
+		index = ensure(index, nodes);
+		low = ensure(low, nodes);
+		component = ensure(component, nodes);
+		open = ensure(open, nodes);
+		callNodes = ensure(callNodes, nodes);
+		callNext = ensure(callNext, nodes);
+		if (isOpen.length < nodes) isOpen = new boolean[Math.max(nodes, 2 * isOpen.length)];
+		Arrays.fill(index, 0, nodes, -1);
+
+		int counter = 0;
+		int components = 0;
+		int opened = 0;
+		for (int root = 0; root < nodes; root++) {
+			if (index[root] >= 0) continue;
+			int calls = 0;
+			index[root] = low[root] = counter++;
+			open[opened++] = root;
+			isOpen[root] = true;
+			callNodes[calls] = root;
+			callNext[calls++] = root < n ? edgeStart[root] : 0;
+			while (calls > 0) {
+				int v = callNodes[calls-1];
+				int w = -1;
+				if (v < n) {
+					while (callNext[calls-1] < edgeStart[v+1]) {
+						int j = edges[callNext[calls-1]++];
+						if (j != varMatch[v]) {
+							w = n + j;
+							break;
+						}
+					}
+				} else if (callNext[calls-1] == 0) {
+					callNext[calls-1] = 1;
+					w = valMatch[v - n];
+				}
+				if (w >= 0) {
+					if (index[w] < 0) {
+						index[w] = low[w] = counter++;
+						open[opened++] = w;
+						isOpen[w] = true;
+						callNodes[calls] = w;
+						callNext[calls++] = w < n ? edgeStart[w] : 0;
+					} else if (isOpen[w] && index[w] < low[v]) low[v] = index[w];
+				} else {
+					// all successors of v are done
+					if (low[v] == index[v]) {
+						int u;
+						do {
+							u = open[--opened];
+							isOpen[u] = false;
+							component[u] = components;
+						} while (u != v);
+						components++;
+					}
+					calls--;
+					if (calls > 0 && low[v] < low[callNodes[calls-1]]) low[callNodes[calls-1]] = low[v];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the values from which an alternating path leads to a free value, by a breadth first
+	 * search backwards from the free values
+	 */
+	private void findPathsToFreeValues() {
+		if (reachesFree.length < m) reachesFree = new boolean[Math.max(m, 2 * reachesFree.length)];
+		queue = ensure(queue, m);
+		int head = 0;
+		int tail = 0;
+		for (int j = 0; j < m; j++) {
+			reachesFree[j] = valMatch[j] < 0;
+			if (reachesFree[j]) queue[tail++] = j;
+		}
+		while (head < tail) {
+			int j = queue[head++];
+			for (int k = reverseStart[j]; k < reverseStart[j+1]; k++) {
+				int x = reverseEdges[k];
+				int matchedValue = varMatch[x];
+				if (matchedValue != j && !reachesFree[matchedValue]) {
+					reachesFree[matchedValue] = true;
+					queue[tail++] = matchedValue;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns an array with room for at least the given number of entries
+	 * @param array the array used so far
+	 * @param length the number of entries needed
+	 * @return the array itself if it is big enough, a bigger one otherwise
+	 */
+	private static int[] ensure(int[] array, int length) {
+		return array.length >= length ? array : new int[Math.max(length, 2 * array.length)];
+	}
+}
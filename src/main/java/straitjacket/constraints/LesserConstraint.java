@@ -1,159 +1,120 @@
-package straitjacket.constraints;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-
-import straitjacket.Constraint;
-import straitjacket.Variable;
-
-/**
- * A repesentation for all problems of the type a_n x_n+... a_1 x_1 < a or in
- * terms of the program variables*coefficients < rhs
- */
-public class LesserConstraint extends LinearEquationLikeConstraint {
-
-	/**
-	 * Creates a LesserConstraint with the given parameter
-	 * 
-	 * @param name
-	 *            a name for the Constraint
-	 * @param variables
-	 *            list of the involved variables
-	 * @param coefficients
-	 *            list of the coefficients for the variables
-	 * @param rhs
-	 *            the value for the rhs
-	 */
-	public LesserConstraint(String name, ArrayList<Variable> variables,
-			ArrayList<Integer> coefficients, int rhs) {
-		super(name, variables, coefficients, rhs);
-	}
-
-	/**
-	 * The operator for the Constraint. A LesserConstraint means <
-	 * 
-	 * @return the sign representing the LesserConstraint: "<"
-	 */
-	@Override
-	public String operatorSign() {
-		return "<";
-	}
-
-	/**
-	 * verifies the operation (lhs < rhs). lhs will be constucted in a method of
-	 * LinearEquationLikeConstraint
-	 * 
-	 * @return true if lhs is lesser then rhs false otherwise
-	 */
-	@Override
-	public boolean operator(int lhs, int rhs) {
-		return lhs < rhs;
-	}
-
-	/**
-	 * TODO doc muss abgeaendert werden. 2 free var boundconsistency wegen der
-	 * linearitaet von lesserconst
-	 * 
-	 * @return a collection of variables which domains have changed making the
-	 *         constraint arc consistent. When no variable's domain was changed,
-	 *         it may return either an empty Collection or null
-	 */
-	/*
-	public Collection<Variable> makeArcConsistent() {
-		ArrayList<Variable> chList = new ArrayList<Variable>();
-		if (getNumberOfFreeVariables() == 2) {
-			Iterator<Variable> varIt = getFreeVariables().iterator();
-
-			// we know that the Iterator points only to two variables
-			Variable var1 = varIt.next(); // CurrentVariable
-			Variable var2 = varIt.next(); // OtherVariable
-			// and that bother are untied, tie then to the min
-			var1.tieToNextValue();
-			var2.tieToNextValue();
-			Constraint.satisfaction llStatus = holds();
-			// the one to the min the other to the maximum
-			var2.tieToValue(var2.getDomain().getMax() - 1);
-			Constraint.satisfaction luStatus = holds();
-			// the one to the maximum the other to the min
-			var1.tieToValue(var1.getDomain().getMax() - 1);
-			var2.untie();
-			var2.tieToNextValue();
-			Constraint.satisfaction ulStatus = holds();
-
-			// and then both to the maximum
-			var2.tieToValue(var2.getDomain().getMax() - 1);
-			Constraint.satisfaction uuStatus = holds();
-			// if all 4 are TRUE all combination are possible
-			if ((Constraint.satisfaction.TRUE.equals(llStatus))
-					&& (Constraint.satisfaction.TRUE.equals(luStatus))
-					&& (Constraint.satisfaction.TRUE.equals(ulStatus))
-					&& (Constraint.satisfaction.TRUE.equals(uuStatus)))
-				return chList; // no changes, so an empty list
-			// if all 4 are FALSE no combination is possible
-			if ((Constraint.satisfaction.FALSE.equals(llStatus))
-					&& (Constraint.satisfaction.FALSE.equals(luStatus))
-					&& (Constraint.satisfaction.FALSE.equals(ulStatus))
-					&& (Constraint.satisfaction.FALSE.equals(uuStatus))) {
-				var1.untie();
-				var1.getDomain().getSet().clear();
-				var2.untie();
-				var2.getDomain().getSet().clear();
-				chList.add(var1);
-				chList.add(var2);
-				return chList;
-			}
-		}// end of if free==2
-		// if we get here the simplificated algorith was useless, and we use the
-		// orignal one
-		return super.makeArcConsistent();
-	}// end of arcCons
-	*/
-
-	/**
-	 * creates NodeConsistency, for LessenConstrain we can check bounds
-	 * consistency
-	 * 
-	 * @return boolean whether we found at lease one value to fit the constraint
-	 */
-	@Override
-	public boolean makeNodeConsistent() {
-
-		boolean isSatisfiable = false;
-		if (getNumberOfFreeVariables() == 1) {
-			Iterator<Variable> it = getFreeVariables().iterator();
-			// getFreeVariables() return only one variable ..
-			Constraint.satisfaction lowerStatus;
-			Constraint.satisfaction upperStatus;
-			if (it.hasNext()) {
-				Variable cVar = it.next();
-				// cVar was untied and then we tied it to the smallest possible
-				// value
-				cVar.tieToNextValue();
-				lowerStatus = holds();
-				cVar.tieToValue(cVar.getDomain().getMax() - 1);
-				upperStatus = holds();
-				cVar.untie();
-				// both ends are not equal, so we have to check
-				// it with the another makeNodeConsistent() method
-				if (!lowerStatus.equals(upperStatus)) {
-					return super.makeNodeConsistent();
-				} else {
-					if (upperStatus.equals(Constraint.satisfaction.TRUE))
-						// both sides of the range of are valid, so every value
-						// in the domain will be possible
-						return true;
-					else {
-						// both sides of the range of are invalid and because of
-						// the
-						// linearity (monotonie), no value of the domain is
-						// valid
-						cVar.getDomain().getSet().clear();
-						return false;
-					}
-				}
-			}
-		}
-		return isSatisfiable;
-	}
-}
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+
+import straitjacket.Variable;
+
+/**
+ * A repesentation for all problems of the type a_n x_n+... a_1 x_1 < a or in
+ * terms of the program variables*coefficients < rhs
+ */
+public class LesserConstraint extends LinearEquationLikeConstraint {
+
+	/**
+	 * Creates a LesserConstraint with the given parameter
+	 * 
+	 * @param name
+	 *            a name for the Constraint
+	 * @param variables
+	 *            list of the involved variables
+	 * @param coefficients
+	 *            list of the coefficients for the variables
+	 * @param rhs
+	 *            the value for the rhs
+	 */
+	public LesserConstraint(String name, ArrayList<Variable> variables,
+			ArrayList<Integer> coefficients, int rhs) {
+		super(name, variables, coefficients, rhs);
+	}
+
+	/**
+	 * The operator for the Constraint. A LesserConstraint means <
+	 * 
+	 * @return the sign representing the LesserConstraint: "<"
+	 */
+	@Override
+	public String operatorSign() {
+		return "<";
+	}
+
+	/**
+	 * verifies the operation (lhs < rhs). lhs will be constucted in a method of
+	 * LinearEquationLikeConstraint
+	 * 
+	 * @return true if lhs is lesser then rhs false otherwise
+	 */
+	@Override
+	public boolean operator(int lhs, int rhs) {
+		return lhs < rhs;
+	}
+
+	/**
+	 * The lhs has to be smaller than rhs
+	 * 
+	 * @return rhs - 1
+	 * @see LinearEquationLikeConstraint#getLhsUpperLimit()
+	 */
+	@Override
+	protected long getLhsUpperLimit() {
+		return rhs - 1L;
+	}
+
+	/**
+	 * TODO doc muss abgeaendert werden. 2 free var boundconsistency wegen der
+	 * linearitaet von lesserconst
+	 * 
+	 * @return a collection of variables which domains have changed making the
+	 *         constraint arc consistent. When no variable's domain was changed,
+	 *         it may return either an empty Collection or null
+	 */
+	/*
+	public Collection<Variable> makeArcConsistent(SolverState state) {
+		ArrayList<Variable> chList = new ArrayList<Variable>();
+		if (getNumberOfFreeVariables(state) == 2) {
+			Iterator<Variable> varIt = getFreeVariables(state).iterator();
+
+			// we know that the Iterator points only to two variables
+			Variable var1 = varIt.next(); // CurrentVariable
+			Variable var2 = varIt.next(); // OtherVariable
+			// and that bother are untied, tie then to the min
+			state.tieToNextValue(var1);
+			state.tieToNextValue(var2);
+			Constraint.satisfaction llStatus = holds(state);
+			// the one to the min the other to the maximum
+			state.tieToValue(var2, state.getDomain(var2).max());
+			Constraint.satisfaction luStatus = holds(state);
+			// the one to the maximum the other to the min
+			state.tieToValue(var1, state.getDomain(var1).max());
+			state.untie(var2);
+			state.tieToNextValue(var2);
+			Constraint.satisfaction ulStatus = holds(state);
+
+			// and then both to the maximum
+			state.tieToValue(var2, state.getDomain(var2).max());
+			Constraint.satisfaction uuStatus = holds(state);
+			// if all 4 are TRUE all combination are possible
+			if ((Constraint.satisfaction.TRUE.equals(llStatus))
+					&& (Constraint.satisfaction.TRUE.equals(luStatus))
+					&& (Constraint.satisfaction.TRUE.equals(ulStatus))
+					&& (Constraint.satisfaction.TRUE.equals(uuStatus)))
+				return chList; // no changes, so an empty list
+			// if all 4 are FALSE no combination is possible
+			if ((Constraint.satisfaction.FALSE.equals(llStatus))
+					&& (Constraint.satisfaction.FALSE.equals(luStatus))
+					&& (Constraint.satisfaction.FALSE.equals(ulStatus))
+					&& (Constraint.satisfaction.FALSE.equals(uuStatus))) {
+				state.untie(var1);
+				state.getDomain(var1).clear();
+				state.untie(var2);
+				state.getDomain(var2).clear();
+				chList.add(var1);
+				chList.add(var2);
+				return chList;
+			}
+		}// end of if free==2
+		// if we get here the simplificated algorith was useless, and we use the
+		// orignal one
+		return super.makeArcConsistent(state);
+	}// end of arcCons
+	*/
+}
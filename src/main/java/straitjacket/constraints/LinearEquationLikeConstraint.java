@@ -1,124 +1,513 @@
-package straitjacket.constraints;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-
-import straitjacket.Variable;
-/**
- * A repesentation for all problems of the type 
- * a_n x_n+... a_1 x_1 < a,  a_n x_n+... a_1 x_1 > a,
- * a_n x_n+... a_1 x_1 <> a, a_n x_n+... a_1 x_1 = a
- * or in terms of the program
- * variables*coefficients sign rhs
- */
-public abstract class LinearEquationLikeConstraint extends EquationLikeConstraint {
-
-	/**
-	 * A hashmap for all variableCoeffs
-	 */
-    private final HashMap<Variable,Integer> variableCoeffs;
-	
-	/**
-	 * Creates a LinearEquationLikeConstraint with the given parameter
-	 * @param name a name for the constraint
-	 * @param variables list of the involved variables
-	 * @param coefficients list of the coefficients for the variabeles
-	 * @param rhs the value for the rhs
-	 */
-    LinearEquationLikeConstraint(String name, ArrayList<Variable> variables, ArrayList<Integer> coefficients, int rhs) {
-		super(name,rhs);
-		
-		this.rhs  = rhs;
-		this.variableCoeffs = new HashMap<Variable,Integer>(Math.min(variables.size(),coefficients.size()));
-		this.variables = new HashSet<Variable>(Math.min(variables.size(),coefficients.size()));
-		
-		Iterator<Variable> varIter = variables.iterator();
-		Iterator<Integer> coeffIter = coefficients.iterator();
-		while (varIter.hasNext() && coeffIter.hasNext()) {
-			Variable var = varIter.next();
-			Integer coeff = coeffIter.next();
-			variableCoeffs.put(var,coeff);
-			this.variables.add(var);
-		}
-	}	
-	
-	/**
-	 * Decides wether the constraint is still satified with respect to the 
-	 * given concrete values of the variables. Take care to provide the 
-	 * correct variables in the parameter (they're compared by reference, not by name)
-	 * @param valuations a HashMap with variable assignments. 
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	@Override
-	public satisfaction holdsFor(HashMap<Variable,Integer> valuations) {
-		
-		int lhs = 0;
-		for (Variable var : variables) {
-			// we respect the explicit valuations
-			if ( valuations.containsKey( var ) ) {
-				lhs += variableCoeffs.get(var) * valuations.get(var);
-				continue;
-			}
-			
-			// we respect wether a variable is tied to a value here or not
-			if (var.isTiedToValue()) {
-				lhs += variableCoeffs.get(var) * var.getTiedValue();
-			} else {
-				// if we don't have a tied variable here, look at the actual domains of the variable
-				switch (var.getDomain().getSet().size()) {
-					case 0: return satisfaction.FALSE;
-					case 1: lhs += variableCoeffs.get(var) * var.getDomain().getMax(); break;
-					default: return satisfaction.DELAY;
-				}
-			}
-		}
-		// if the function got this far we can actually evaluate wether the constraint holds or not
-		return operator(lhs,rhs) ? satisfaction.TRUE : satisfaction.FALSE;
-	}
-	/**
-	 * Decides wether the constraint is still satified with respect to the 
-	 * current domains of the involved variables.
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	@Override
-	public satisfaction holds() {
-		int lhs = 0;
-		for (Variable var : variables) {
-			// we respect wether a variable is tied to a value here or not
-			if (var.isTiedToValue()) {
-				lhs += variableCoeffs.get(var) * var.getTiedValue();
-			} else {
-				// if we don't have a tied variable here, look at the actual domains of the variable
-				switch (var.getDomain().getSet().size()) {
-					case 0: return satisfaction.FALSE;
-					case 1: lhs += variableCoeffs.get(var) * var.getDomain().getMax(); break;
-					default: return satisfaction.DELAY;
-				}
-			}
-		}
-		// if the function got this far we can actually evaluate wether the constraint holds or not
-		return operator(lhs,rhs) ? satisfaction.TRUE : satisfaction.FALSE;
-	}
-
-	/**
-	 * Returns a string representation of this Constrain
-	 * @return a string representation of this Constrain
-	 */
-	public String toString() {
-		String out = this.getName() + ": ";
-		boolean first = true;
-		for ( Variable x : this.variableCoeffs.keySet() ) {
-			if ( first ) first = false;
-			else out += " + ";
-			out +=  this.variableCoeffs.get(x) + x.toString();
-		}
-		
-		out += " " + this.operatorSign() + " " + this.rhs; 
-		
-		return out;
-	}
-	
-		
-}
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+/**
+ * A repesentation for all problems of the type 
+ * a_n x_n+... a_1 x_1 < a,  a_n x_n+... a_1 x_1 > a,
+ * a_n x_n+... a_1 x_1 <> a, a_n x_n+... a_1 x_1 = a
+ * or in terms of the program
+ * variables*coefficients sign rhs
+ */
+public abstract class LinearEquationLikeConstraint extends EquationLikeConstraint {
+
+	/**
+	 * the involved variables in the order they were given, coefficients[i] belongs to terms[i]
+	 */
+    private final Variable[] terms;
+	
+	/**
+	 * the coefficients of the variables
+	 */
+    private final int[] coefficients;
+	
+	/**
+	 * The extremes of the terms for the bounds propagation, kept in the state of a search 
+	 * (see SolverState.getConstraintData(Constraint)) so a propagation does not allocate them again
+	 */
+	private static class TermBounds {
+		
+		/**
+		 * the smallest value of every term
+		 */
+		final long[] termMin;
+		
+		/**
+		 * the largest value of every term
+		 */
+		final long[] termMax;
+		
+		/**
+		 * for every term whether the domain of its variable has changed in the current propagation
+		 */
+		final boolean[] changed;
+		
+		/**
+		 * Creates the bounds of the given number of terms
+		 * @param n the number of terms
+		 */
+		TermBounds(int n) {
+			termMin = new long[n];
+			termMax = new long[n];
+			changed = new boolean[n];
+		}
+	}
+	
+	/**
+	 * Creates a LinearEquationLikeConstraint with the given parameter
+	 * @param name a name for the constraint
+	 * @param variables list of the involved variables
+	 * @param coefficients list of the coefficients for the variabeles
+	 * @param rhs the value for the rhs
+	 */
+    LinearEquationLikeConstraint(String name, ArrayList<Variable> variables, ArrayList<Integer> coefficients, int rhs) {
+		super(name,rhs);
+		
+		this.rhs  = rhs;
+		int length = Math.min(variables.size(),coefficients.size());
+		this.variables = new HashSet<Variable>(length);
+		
+		Variable[] terms = new Variable[length];
+		int[] coeffs = new int[length];
+		int count = 0;
+		Iterator<Variable> varIter = variables.iterator();
+		Iterator<Integer> coeffIter = coefficients.iterator();
+		while (varIter.hasNext() && coeffIter.hasNext()) {
+			Variable var = varIter.next();
+			Integer coeff = coeffIter.next();
+			if (this.variables.add(var)) {
+				terms[count] = var;
+				coeffs[count++] = coeff;
+			} else {
+				// a variable given twice keeps the last coefficient
+				for (int i = 0; i < count; i++) if (terms[i] == var) coeffs[i] = coeff;
+			}
+		}
+		this.terms = new Variable[count];
+		this.coefficients = new int[count];
+		System.arraycopy(terms, 0, this.terms, 0, count);
+		System.arraycopy(coeffs, 0, this.coefficients, 0, count);
+	}	
+	
+	/**
+	 * Returns the number of terms, i.e. of distinct variables
+	 * @return the number of terms
+	 */
+	protected int getNumberOfTerms() {
+		return terms.length;
+	}
+	
+	/**
+	 * Returns the variable of a term
+	 * @param i the index of the term, in the order the variables were given
+	 * @return the variable of the term
+	 */
+	protected Variable getTerm(int i) {
+		return terms[i];
+	}
+	
+	/**
+	 * Returns the coefficient of a term
+	 * @param i the index of the term, in the order the variables were given
+	 * @return the coefficient of the variable of the term
+	 */
+	protected int getCoefficient(int i) {
+		return coefficients[i];
+	}
+	
+	/**
+	 * Decides wether the constraint is still satified with respect to the 
+	 * given concrete values of the variables. Take care to provide the 
+	 * correct variables in the parameter (they're compared by reference, not by name)
+	 * @param state the state of the search, holding the domains and tied values
+	 * @param valuations a HashMap with variable assignments. 
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	@Override
+	public satisfaction holdsFor(SolverState state, HashMap<Variable,Integer> valuations) {
+		
+		long lhs = 0;
+		for (int i = 0; i < terms.length; i++) {
+			Variable var = terms[i];
+			// we respect the explicit valuations
+			Integer value = valuations.get(var);
+			if ( value != null ) {
+				lhs += (long)coefficients[i] * value;
+				continue;
+			}
+			
+			// we respect wether a variable is tied to a value here or not
+			if (state.isTiedToValue(var)) {
+				lhs += (long)coefficients[i] * state.getTiedValue(var);
+			} else {
+				// if we don't have a tied variable here, look at the actual domains of the variable
+				switch (state.getDomain(var).size()) {
+					case 0: return satisfaction.FALSE;
+					case 1: lhs += (long)coefficients[i] * state.getDomain(var).min(); break;
+					default: return satisfaction.DELAY;
+				}
+			}
+		}
+		// if the function got this far we can actually evaluate wether the constraint holds or not
+		return decide(lhs);
+	}
+	/**
+	 * Decides wether the constraint is still satified with respect to the 
+	 * current domains of the involved variables.
+	 * @param state the state of the search, holding the domains and tied values
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	@Override
+	public satisfaction holds(SolverState state) {
+		long lhs = 0;
+		for (int i = 0; i < terms.length; i++) {
+			Variable var = terms[i];
+			// we respect wether a variable is tied to a value here or not
+			if (state.isTiedToValue(var)) {
+				lhs += (long)coefficients[i] * state.getTiedValue(var);
+			} else {
+				// if we don't have a tied variable here, look at the actual domains of the variable
+				switch (state.getDomain(var).size()) {
+					case 0: return satisfaction.FALSE;
+					case 1: lhs += (long)coefficients[i] * state.getDomain(var).min(); break;
+					default: return satisfaction.DELAY;
+				}
+			}
+		}
+		// if the function got this far we can actually evaluate wether the constraint holds or not
+		return decide(lhs);
+	}
+
+	/**
+	 * Returns the smallest value of the lhs the constraint allows, for the bounds propagation
+	 * @return the smallest allowed lhs, Long.MIN_VALUE if there is no lower limit
+	 */
+	protected long getLhsLowerLimit() {
+		return Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Returns the largest value of the lhs the constraint allows, for the bounds propagation
+	 * @return the largest allowed lhs, Long.MAX_VALUE if there is no upper limit
+	 */
+	protected long getLhsUpperLimit() {
+		return Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns the smallest value the lhs can take with the values left
+	 * @param state the state of the search
+	 * @return the sum of the smallest values of the terms, tied variables count as constants
+	 */
+	protected long getLhsMin(SolverState state) {
+		long sum = 0;
+		for (int i = 0; i < terms.length; i++) {
+			long c = coefficients[i];
+			if (state.isTiedToValue(terms[i])) sum += c * state.getTiedValue(terms[i]);
+			else sum += c * (c >= 0 ? state.getDomain(terms[i]).min() : state.getDomain(terms[i]).max());
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns the largest value the lhs can take with the values left
+	 * @param state the state of the search
+	 * @return the sum of the largest values of the terms, tied variables count as constants
+	 */
+	protected long getLhsMax(SolverState state) {
+		long sum = 0;
+		for (int i = 0; i < terms.length; i++) {
+			long c = coefficients[i];
+			if (state.isTiedToValue(terms[i])) sum += c * state.getTiedValue(terms[i]);
+			else sum += c * (c >= 0 ? state.getDomain(terms[i]).max() : state.getDomain(terms[i]).min());
+		}
+		return sum;
+	}
+	
+	/**
+	 * The constraint is entailed if every lhs the domains allow lies within the limits of the lhs
+	 * @param state the state of the search
+	 * @return true if the constraint is guaranteed to hold
+	 * @see straitjacket.Constraint#isEntailed(SolverState)
+	 */
+	@Override
+	public boolean isEntailed(SolverState state) {
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE) return false;
+		for (Variable var : terms) {
+			if (!state.isTiedToValue(var) && state.getDomain(var).isEmpty()) return false;
+		}
+		return getLhsMin(state) >= lower && getLhsMax(state) <= upper;
+	}
+	
+	/**
+	 * Makes the constraint bounds consistent with interval reasoning. The lhs lies between the sum of the
+	 * smallest and the sum of the largest values of its terms, so every term has to stay within the limits
+	 * of the lhs minus the extremes of all other terms. A pass over the terms tightens the bounds of every 
+	 * free variable in O(n), the two sums are updated on every change instead of being recomputed, and
+	 * the passes are repeated until no bound changes. Tied variables count as constants.
+	 * An equation with two free variables is afterwards revised value by value, which also removes the 
+	 * values inside the bounds without a support. Constraints without limits use the revision of Constraint.
+	 * The extremes of the terms are kept in the state of the search, so nothing is allocated unless a 
+	 * domain changes.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return the variables whose domains have changed, null if none has changed
+	 * @see Constraint#makeArcConsistent(SolverState)
+	 */
+	@Override
+	public Collection<Variable> makeArcConsistent(SolverState state) {
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE) return super.makeArcConsistent(state);
+		
+		ArrayList<Variable> changedVars = null;
+		int n = terms.length;
+		// the smallest and largest value of every term, and their sums
+		int position = state.getModel().getPosition(this);
+		TermBounds bounds = position < 0 ? null : (TermBounds)state.getConstraintData(this);
+		if (bounds == null) {
+			bounds = new TermBounds(n);
+			if (position >= 0) state.setConstraintData(this, bounds);
+		}
+		long[] termMin = bounds.termMin;
+		long[] termMax = bounds.termMax;
+		boolean[] changed = bounds.changed;
+		Arrays.fill(changed, false);
+		long sumMin = 0;
+		long sumMax = 0;
+		int free = 0;
+		for (int i = 0; i < n; i++) {
+			Variable var = terms[i];
+			if (state.isTiedToValue(var)) {
+				termMin[i] = termMax[i] = (long)coefficients[i] * state.getTiedValue(var);
+			} else {
+				Domain domain = state.getDomain(var);
+				if (domain.isEmpty()) return Collections.singletonList(var);
+				setTermBounds(i, domain, termMin, termMax);
+				free++;
+			}
+			sumMin += termMin[i];
+			sumMax += termMax[i];
+		}
+		if (free == 0) return null;
+		
+		boolean again = true;
+		while (again) {
+			again = false;
+			if (sumMin > upper || sumMax < lower) {
+				// no combination of the values left can satisfy the constraint
+				if (changedVars == null) changedVars = new ArrayList<Variable>();
+				for (Variable var : terms) {
+					if (!state.isTiedToValue(var) && !state.getDomain(var).isEmpty()) {
+						state.getDomain(var).clear();
+						changedVars.add(var);
+					}
+				}
+				return changedVars;
+			}
+			for (int i = 0; i < n; i++) {
+				Variable var = terms[i];
+				long c = coefficients[i];
+				if (c == 0 || state.isTiedToValue(var)) continue;
+				// the limits of this term, given the extremes of all other terms
+				long termLower = lower == Long.MIN_VALUE ? Long.MIN_VALUE : lower - (sumMax - termMax[i]);
+				long termUpper = upper == Long.MAX_VALUE ? Long.MAX_VALUE : upper - (sumMin - termMin[i]);
+				if (termLower <= termMin[i] && termUpper >= termMax[i]) continue;
+				
+				// the limits of the variable, dividing by a negative coefficient swaps them
+				long varLower = Long.MIN_VALUE;
+				long varUpper = Long.MAX_VALUE;
+				if (c > 0) {
+					if (termLower != Long.MIN_VALUE) varLower = divideCeil(termLower, c);
+					if (termUpper != Long.MAX_VALUE) varUpper = divideFloor(termUpper, c);
+				} else {
+					if (termUpper != Long.MAX_VALUE) varLower = divideCeil(termUpper, c);
+					if (termLower != Long.MIN_VALUE) varUpper = divideFloor(termLower, c);
+				}
+				
+				Domain domain = state.getDomain(var);
+				boolean narrowed = false;
+				if (varLower > domain.min()) narrowed |= domain.removeBelow((int)Math.min(varLower, Domain.NO_VALUE));
+				if (varUpper < domain.max()) narrowed |= domain.removeAbove((int)Math.max(varUpper, Integer.MIN_VALUE));
+				if (!narrowed) continue;
+				if (!changed[i]) {
+					changed[i] = true;
+					if (changedVars == null) changedVars = new ArrayList<Variable>();
+					changedVars.add(var);
+				}
+				if (domain.isEmpty()) return changedVars;
+				sumMin -= termMin[i];
+				sumMax -= termMax[i];
+				setTermBounds(i, domain, termMin, termMax);
+				sumMin += termMin[i];
+				sumMax += termMax[i];
+				again = true;
+			}
+		}
+		
+		// bounds can't see the holes, an equation of two variables is revised value by value
+		if (free == 2 && lower == upper) {
+			for (Variable var : super.makeArcConsistent(state)) {
+				if (changedVars == null) changedVars = new ArrayList<Variable>();
+				if (!changedVars.contains(var)) changedVars.add(var);
+			}
+		}
+		return changedVars;
+	}
+	
+	/**
+	 * Makes the constraint node consistent without trying the values one by one. With only one free
+	 * variable the values satisfying the constraint form an interval, so the interval reasoning of
+	 * makeArcConsistent(SolverState) narrows its domain to exactly these values. Constraints without
+	 * limits are left to Constraint.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return whether we found at least one value to fit the constraint
+	 * @see straitjacket.Constraint#makeNodeConsistent(SolverState)
+	 */
+	@Override
+	public boolean makeNodeConsistent(SolverState state) {
+		if (getLhsLowerLimit() == Long.MIN_VALUE && getLhsUpperLimit() == Long.MAX_VALUE) return super.makeNodeConsistent(state);
+		if (getNumberOfFreeVariables(state) != 1) return false;
+		makeArcConsistent(state);
+		for (Variable var : terms) {
+			if (!state.isTiedToValue(var)) return !state.getDomain(var).isEmpty();
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes the value of the only free variable for which the lhs takes the given value.
+	 * If there is no or more than one free variable, nothing is done.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @param lhs the value the lhs must not take
+	 * @return the variables whose domains have changed
+	 */
+	protected Collection<Variable> removeValueReaching(SolverState state, long lhs) {
+		ArrayList<Variable> changedVars = new ArrayList<Variable>();
+		Variable free = null;
+		long coefficient = 0;
+		long rest = lhs;
+		for (int i = 0; i < terms.length; i++) {
+			Variable var = terms[i];
+			if (state.isTiedToValue(var)) rest -= (long)coefficients[i] * state.getTiedValue(var);
+			else if (free != null) return changedVars;
+			else {
+				free = var;
+				coefficient = coefficients[i];
+			}
+		}
+		if (free == null) return changedVars;
+		Domain domain = state.getDomain(free);
+		boolean changed = false;
+		if (coefficient == 0) {
+			// the lhs takes the value whatever the variable is
+			if (rest == 0 && !domain.isEmpty()) {
+				domain.clear();
+				changed = true;
+			}
+		} else if (rest % coefficient == 0) {
+			long value = rest / coefficient;
+			changed = value > Integer.MIN_VALUE && value < Domain.NO_VALUE && domain.remove((int)value);
+		}
+		if (changed) changedVars.add(free);
+		return changedVars;
+	}
+	
+	/**
+	 * Sets the smallest and largest value the term at the given index can take
+	 * @param i the index of the term
+	 * @param domain the current domain of its variable, not empty
+	 * @param termMin where the smallest values of the terms are kept
+	 * @param termMax where the largest values of the terms are kept
+	 */
+	private void setTermBounds(int i, Domain domain, long[] termMin, long[] termMax) {
+		long c = coefficients[i];
+		termMin[i] = c >= 0 ? c * domain.min() : c * domain.max();
+		termMax[i] = c >= 0 ? c * domain.max() : c * domain.min();
+	}
+	
+	/**
+	 * Divides and rounds towards negative infinity
+	 * @param a the dividend
+	 * @param b the divisor, not 0
+	 * @return the largest integer not bigger than a/b
+	 */
+	private static long divideFloor(long a, long b) {
+		long q = a / b;
+		if (a % b != 0 && (a < 0) != (b < 0)) q--;
+		return q;
+	}
+	
+	/**
+	 * Divides and rounds towards positive infinity
+	 * @param a the dividend
+	 * @param b the divisor, not 0
+	 * @return the smallest integer not smaller than a/b
+	 */
+	private static long divideCeil(long a, long b) {
+		long q = a / b;
+		if (a % b != 0 && (a < 0) == (b < 0)) q++;
+		return q;
+	}
+
+	/**
+	 * Decides the constraint for a pair of values, if it has exactly the two given variables
+	 * @see Constraint#holdsForPair(Variable, int, Variable, int)
+	 */
+	@Override
+	public satisfaction holdsForPair(Variable x, int a, Variable y, int b) {
+		if (terms.length != 2) return satisfaction.DELAY;
+		long lhs;
+		if (terms[0] == x && terms[1] == y) lhs = (long)coefficients[0] * a + (long)coefficients[1] * b;
+		else if (terms[0] == y && terms[1] == x) lhs = (long)coefficients[0] * b + (long)coefficients[1] * a;
+		else return satisfaction.DELAY;
+		return decide(lhs);
+	}
+	
+	/**
+	 * Decides the operator for the lhs, which is summed up in a long like in the bounds propagation.
+	 * Within the range of an int the operator decides, beyond the limits of the lhs decide, or 
+	 * without limits the operator with the nearest int.
+	 * @param lhs the value of the lhs
+	 * @return TRUE if the constraint holds for the value, FALSE otherwise
+	 */
+	private satisfaction decide(long lhs) {
+		if (lhs >= Integer.MIN_VALUE && lhs <= Integer.MAX_VALUE) return operator((int)lhs,rhs) ? satisfaction.TRUE : satisfaction.FALSE;
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE) {
+			return operator(lhs < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE, rhs) ? satisfaction.TRUE : satisfaction.FALSE;
+		}
+		return lhs >= lower && lhs <= upper ? satisfaction.TRUE : satisfaction.FALSE;
+	}
+
+	/**
+	 * Returns a string representation of this Constrain
+	 * @return a string representation of this Constrain
+	 */
+	public String toString() {
+		String out = this.getName() + ": ";
+		boolean first = true;
+		for ( int i = 0; i < terms.length; i++ ) {
+			if ( first ) first = false;
+			else out += " + ";
+			out +=  this.coefficients[i] + terms[i].toString();
+		}
+		
+		out += " " + this.operatorSign() + " " + this.rhs; 
+		
+		return out;
+	}
+	
+		
+}
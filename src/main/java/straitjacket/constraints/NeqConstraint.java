@@ -1,43 +1,171 @@
-package straitjacket.constraints;
-
-import java.util.ArrayList;
-
-import straitjacket.Variable;
-/**
- * A repesentation for all problems of the type 
- * a_n x_n+... a_1 x_1 <> a,
- * or in terms of the program
- * variables*coefficients != rhs
- */
-public class NeqConstraint extends LinearEquationLikeConstraint {
-	
-	/**
-	 * Creates a NeqConstraint with the given parameter
-	 * @param name a name for the Constraint
-	 * @param variables list of the involved variables
-	 * @param coefficients list of the coefficients for the variables
-	 * @param rhs the value for the rhs
-	 */	
-	public NeqConstraint(String name, ArrayList<Variable> variables, ArrayList<Integer> coefficients, int rhs) {
-		super(name, variables, coefficients, rhs);
-	}
-
-	/**
-	 * The operator for the Constraint. A NeqConstraint means <>
-	 * @return the sign representing the NeqConstraint: "<>" 
-	 */
-	@Override
-	public String operatorSign() {
-		return "<>";
-	}
-
-	/**
-	 * verifies the operation (lhs != rhs). lhs will be constucted in a method of LinearEquationLikeConstraint
-	 * @return true if lhs does not takes the same value as rhs, false otherwise 
-	 */	
-	@Override
-	public boolean operator(int lhs, int rhs) {
-		return lhs != rhs;
-	}
-	
-}
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+/**
+ * A repesentation for all problems of the type 
+ * a_n x_n+... a_1 x_1 <> a,
+ * or in terms of the program
+ * variables*coefficients != rhs
+ */
+public class NeqConstraint extends LinearEquationLikeConstraint {
+	
+	/**
+	 * the first variable of a binary inequation a x + b y <> rhs, null if the inequation is not binary
+	 */
+	private final Variable x;
+	
+	/**
+	 * the second variable of a binary inequation
+	 */
+	private final Variable y;
+	
+	/**
+	 * the coefficient of x
+	 */
+	private final int a;
+	
+	/**
+	 * the coefficient of y
+	 */
+	private final int b;
+	
+	/**
+	 * Creates a NeqConstraint with the given parameter
+	 * @param name a name for the Constraint
+	 * @param variables list of the involved variables
+	 * @param coefficients list of the coefficients for the variables
+	 * @param rhs the value for the rhs
+	 */	
+	public NeqConstraint(String name, ArrayList<Variable> variables, ArrayList<Integer> coefficients, int rhs) {
+		super(name, variables, coefficients, rhs);
+		boolean binary = getNumberOfTerms() == 2 && getCoefficient(0) != 0 && getCoefficient(1) != 0;
+		this.x = binary ? getTerm(0) : null;
+		this.y = binary ? getTerm(1) : null;
+		this.a = binary ? getCoefficient(0) : 0;
+		this.b = binary ? getCoefficient(1) : 0;
+	}
+
+	/**
+	 * The operator for the Constraint. A NeqConstraint means <>
+	 * @return the sign representing the NeqConstraint: "<>" 
+	 */
+	@Override
+	public String operatorSign() {
+		return "<>";
+	}
+
+	/**
+	 * verifies the operation (lhs != rhs). lhs will be constucted in a method of LinearEquationLikeConstraint
+	 * @return true if lhs does not takes the same value as rhs, false otherwise 
+	 */	
+	@Override
+	public boolean operator(int lhs, int rhs) {
+		return lhs != rhs;
+	}
+	
+	/**
+	 * An inequation has no bounds to propagate. With one free variable left it forbids exactly
+	 * one value of it, otherwise the pairs of values are revised as usual.
+	 * A binary inequation like the diagonals of the n queens problem (q_j - q_i <> k) can only
+	 * remove a value once the other variable is fixed, because two values of the other variable 
+	 * always leave a support. So it just looks whether one side is fixed and removes the single
+	 * forbidden value from the other side, in constant time.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return the variables whose domains have changed, null if none has changed
+	 * @see LinearEquationLikeConstraint#makeArcConsistent(SolverState)
+	 */
+	@Override
+	public Collection<Variable> makeArcConsistent(SolverState state) {
+		if (x != null) {
+			if (!state.isTiedToValue(y)) {
+				int xValue = fixedValue(state, x);
+				if (xValue != Domain.NO_VALUE && removeQuotient(state.getDomain(y), rhs - (long)a * xValue, b)) {
+					return Collections.singletonList(y);
+				}
+			}
+			if (!state.isTiedToValue(x)) {
+				int yValue = fixedValue(state, y);
+				if (yValue != Domain.NO_VALUE && removeQuotient(state.getDomain(x), rhs - (long)b * yValue, a)) {
+					return Collections.singletonList(x);
+				}
+			}
+			return null;
+		}
+		if (getNumberOfFreeVariables(state) == 1) return removeValueReaching(state, rhs);
+		return super.makeArcConsistent(state);
+	}
+	
+	/**
+	 * With one free variable left an inequation forbids at most one value, which is removed 
+	 * directly instead of trying all values
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return whether we found at least one value to fit the constraint
+	 * @see LinearEquationLikeConstraint#makeNodeConsistent(SolverState)
+	 */
+	@Override
+	public boolean makeNodeConsistent(SolverState state) {
+		if (getNumberOfFreeVariables(state) != 1) return false;
+		removeValueReaching(state, rhs);
+		for (Variable var : getVariables()) {
+			if (!state.isTiedToValue(var)) return !state.getDomain(var).isEmpty();
+		}
+		return false;
+	}
+	
+	/**
+	 * An inequation is entailed once the lhs can't reach the rhs anymore
+	 * @param state the state of the search
+	 * @return true if the rhs lies outside of the range of the lhs
+	 * @see LinearEquationLikeConstraint#isEntailed(SolverState)
+	 */
+	@Override
+	public boolean isEntailed(SolverState state) {
+		for (Variable var : getVariables()) {
+			if (!state.isTiedToValue(var) && state.getDomain(var).isEmpty()) return false;
+		}
+		return getLhsMin(state) > rhs || getLhsMax(state) < rhs;
+	}
+	
+	/**
+	 * A binary inequation with the constant time propagation never revises pairs of values, 
+	 * so it does not get a SupportTable either, which would only cost time and memory
+	 * @see LinearEquationLikeConstraint#holdsForPair(Variable, int, Variable, int)
+	 */
+	@Override
+	public satisfaction holdsForPair(Variable x, int a, Variable y, int b) {
+		if (this.x != null) return satisfaction.DELAY;
+		return super.holdsForPair(x, a, y, b);
+	}
+	
+	/**
+	 * Returns the value of a variable, if it is fixed
+	 * @param state the state of the search
+	 * @param var the variable
+	 * @return the tied value or the only value left in the domain, Domain.NO_VALUE if there are more
+	 */
+	private static int fixedValue(SolverState state, Variable var) {
+		if (state.isTiedToValue(var)) return state.getTiedValue(var);
+		Domain domain = state.getDomain(var);
+		return domain.size() == 1 ? domain.min() : Domain.NO_VALUE;
+	}
+	
+	/**
+	 * Removes the value v with coefficient * v = rest from the domain, if there is an integer v like that
+	 * @param domain the domain to narrow
+	 * @param rest the value the term must not take
+	 * @param coefficient the coefficient of the variable, not 0
+	 * @return true if the value has been removed
+	 */
+	private static boolean removeQuotient(Domain domain, long rest, int coefficient) {
+		if (rest % coefficient != 0) return false;
+		long value = rest / coefficient;
+		return value > Integer.MIN_VALUE && value < Domain.NO_VALUE && domain.remove((int)value);
+	}
+	
+}
@@ -1,110 +1,235 @@
-package straitjacket.constraints;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-
-import straitjacket.Variable;
-
-/**
- * Repesents an element of an polynom:
- * C * x_n^P_n *...* x_1^P_1
- * 
- */
-class PolynomElement {
-	
-	/**
-	 * A list of the involved variables (x_i)
-	 */
-	public final HashSet<Variable> variables;
-	
-	/**
-	 * A hashmap for all variablePowers (P_i)
-	 */
-    private final HashMap<Variable,Double> variablePower;
-	
-	/**
-	 * the constant coefficient 
-	 */
-    private final double cnst;
-	
-	/**
-	 * Allocates a new PolynomElement with the given parameters.
-	 * @param c the Constant coefficient that will be mulitiplied with the element
-	 * @param variables all involved variables 
-	 * @param powers a HashMap that assign the powers to the variables  
-	 */
-	public PolynomElement(double c,ArrayList<Variable> variables, ArrayList<Double> powers){
-		cnst=c;
-		
-		this.variablePower = new HashMap<Variable,Double>(Math.min(variables.size(),powers.size()));
-		this.variables = new HashSet<Variable>(Math.min(variables.size(),powers.size()));
-		
-		Iterator<Variable> varIter = variables.iterator();
-		Iterator<Double> powerIter = powers.iterator();
-		while (varIter.hasNext() && powerIter.hasNext()) {
-			Variable var = varIter.next();
-			Double pow = powerIter.next();
-			variablePower.put(var,pow);
-			this.variables.add(var);
-		}
-	}
-	/**
-	 * Return the value of the element, this should only happen when all involved 
-	 * Variables are fixed.
-	 * 
-	 * Every Methode that calls this methode should assure that all Variables are tied. 
-	 * Because this method, if not all Variables are tied, a unannounce NullPointException will be thrown. 
-	 * @return the value of the element
-	 */
-	public double getValue(){
-		double sum=cnst;
-		for ( Variable x : this.variablePower.keySet() ) {
-			sum =sum*Math.pow(x.getTiedValue(), variablePower.get(x));
-		}
-		return sum;
-	}
-	
-	/**
-	 * Return the value of the element with respect to an alternative allocation of the
-	 * variables given by valuations.
-	 * 
-	 * Every Methode that calls this methode should assure that all Variables are tied 
-	 * or allocated in the parameter valuations.
-	 * Because this method if not all Variables have fixed valus, a unannounce NullPointException will be thrown. 
-	 * @return the value of the element
-	 */
-	public double getValueWithRespectTo(HashMap<Variable,Integer> valuations){
-		double sum=cnst;
-		
-		for (Variable var : variables) {
-			// we respect the explicit valuations
-			if ( valuations.containsKey( var ) ) {
-				sum =sum*Math.pow(valuations.get(var), variablePower.get(var));
-				continue;
-			}
-			
-			// we respect wether a variable is tied to a value here or not
-			if (var.isTiedToValue()) {
-				sum =sum*Math.pow(var.getTiedValue(), variablePower.get(var));
-			} 
-		}
-
-		return sum;
-	}
-	
-	/**
-	 * Return a String representation of the element
-	 * @return a String representation of the element
-	 */
-	public String toString(){
-		String out = ""+cnst;
-		
-		for ( Variable x : this.variablePower.keySet() ) {
-			out +=" *" + x.toString()+ "^" +this.variablePower.get(x);
-		}
-		return out;
-	}
-	
-}
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import straitjacket.SolverState;
+import straitjacket.Variable;
+
+/**
+ * Repesents an element of an polynom:
+ * C * x_n^P_n *...* x_1^P_1
+ * 
+ */
+class PolynomElement {
+	
+	/**
+	 * the largest magnitude a double holds every integer up to, bounds beyond it are not exact anymore
+	 */
+	static final double EXACT_LIMIT = 9007199254740992.0;
+	
+	/**
+	 * A list of the involved variables (x_i)
+	 */
+	public final HashSet<Variable> variables;
+	
+	/**
+	 * the involved variables in the order they were given, powers[i] belongs to factors[i]
+	 */
+    private final Variable[] factors;
+	
+	/**
+	 * the powers of the variables (P_i)
+	 */
+    private final double[] powers;
+	
+	/**
+	 * the constant coefficient 
+	 */
+    private final double cnst;
+    
+    /**
+     * true if the coefficient is an integer and all powers are non-negative integers,
+     * so the element takes integer values only and its bounds can be computed exactly
+     */
+    private final boolean integral;
+	
+	/**
+	 * Allocates a new PolynomElement with the given parameters.
+	 * @param c the Constant coefficient that will be mulitiplied with the element
+	 * @param variables all involved variables 
+	 * @param powers a HashMap that assign the powers to the variables  
+	 */
+	public PolynomElement(double c,ArrayList<Variable> variables, ArrayList<Double> powers){
+		cnst=c;
+		
+		int length = Math.min(variables.size(),powers.size());
+		this.variables = new HashSet<Variable>(length);
+		
+		Variable[] factors = new Variable[length];
+		double[] pows = new double[length];
+		int count = 0;
+		Iterator<Variable> varIter = variables.iterator();
+		Iterator<Double> powerIter = powers.iterator();
+		while (varIter.hasNext() && powerIter.hasNext()) {
+			Variable var = varIter.next();
+			double pow = powerIter.next();
+			if (this.variables.add(var)) {
+				factors[count] = var;
+				pows[count++] = pow;
+			} else {
+				// a variable given twice keeps the last power
+				for (int i = 0; i < count; i++) if (factors[i] == var) pows[i] = pow;
+			}
+		}
+		this.factors = new Variable[count];
+		this.powers = new double[count];
+		System.arraycopy(factors, 0, this.factors, 0, count);
+		System.arraycopy(pows, 0, this.powers, 0, count);
+		
+		boolean integral = c == Math.rint(c) && Math.abs(c) < EXACT_LIMIT;
+		for (double pow : this.powers) integral &= pow >= 0 && pow == Math.rint(pow) && pow <= Integer.MAX_VALUE;
+		this.integral = integral;
+	}
+	
+	/**
+	 * Return the value of the element, this should only happen when all involved 
+	 * Variables are fixed, i.e. tied or with a single value left in their domain.
+	 * 
+	 * Every Methode that calls this methode should assure that all Variables are fixed. 
+	 * @param state the state of the search, holding the domains and tied values
+	 * @return the value of the element
+	 */
+	public double getValue(SolverState state){
+		double sum=cnst;
+		for (int i = 0; i < factors.length; i++) {
+			sum =sum*Math.pow(fixedValue(state, factors[i]), powers[i]);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns the value a fixed variable stands for: the tied value or, if it is untied, 
+	 * the smallest (and for a fixed variable only) value of its domain 
+	 * @param state the state of the search, holding the domains and tied values
+	 * @param x the variable
+	 * @return the value of the variable
+	 */
+	private static int fixedValue(SolverState state, Variable x) {
+		if (state.isTiedToValue(x)) return state.getTiedValue(x);
+		return state.getDomain(x).min();
+	}
+	
+	/**
+	 * Return the value of the element with respect to an alternative allocation of the
+	 * variables given by valuations.
+	 * 
+	 * Every Methode that calls this methode should assure that all Variables are tied 
+	 * or allocated in the parameter valuations.
+	 * Because this method if not all Variables have fixed valus, a unannounce NullPointException will be thrown. 
+	 * @param state the state of the search, holding the domains and tied values
+	 * @param valuations the explicit values of some variables
+	 * @return the value of the element
+	 */
+	public double getValueWithRespectTo(SolverState state, HashMap<Variable,Integer> valuations){
+		double sum=cnst;
+		
+		for (int i = 0; i < factors.length; i++) {
+			Variable var = factors[i];
+			// we respect the explicit valuations
+			Integer value = valuations.get(var);
+			if ( value != null ) {
+				sum =sum*Math.pow(value, powers[i]);
+				continue;
+			}
+			
+			// we respect wether a variable is tied to a value here or not
+			if (state.isTiedToValue(var) || state.getDomain(var).size() == 1) {
+				sum =sum*Math.pow(fixedValue(state, var), powers[i]);
+			} 
+		}
+
+		return sum;
+	}
+	
+	/**
+	 * Checks whether the element only takes integer values, see getBounds()
+	 * @return true if the coefficient is an integer and all powers are non-negative integers
+	 */
+	boolean isIntegral() {
+		return integral;
+	}
+	
+	/**
+	 * Computes the smallest and the largest value the element takes over the current domains, 
+	 * with interval arithmetic. An odd power keeps the order of the values, an even power of an
+	 * interval around zero starts at zero, and the product of two intervals lies between the
+	 * products of their ends. Tied variables count as constants. Only integral elements can be
+	 * bounded, and only as long as all intermediate values are exact in a double.
+	 * @param state the state of the search, none of the domains may be empty
+	 * @param fixed a variable to take as fixed to the given value, null for none
+	 * @param value the value of the fixed variable
+	 * @param bounds where the smallest (bounds[0]) and largest (bounds[1]) value are stored
+	 * @return false if the element can't be bounded exactly
+	 */
+	boolean getBounds(SolverState state, Variable fixed, int value, double[] bounds) {
+		if (!integral) return false;
+		double min = cnst;
+		double max = cnst;
+		for (int i = 0; i < factors.length; i++) {
+			Variable var = factors[i];
+			double lo;
+			double hi;
+			if (var == fixed) lo = hi = value;
+			else if (state.isTiedToValue(var)) lo = hi = state.getTiedValue(var);
+			else {
+				lo = state.getDomain(var).min();
+				hi = state.getDomain(var).max();
+			}
+			// the interval of the power
+			double p = powers[i];
+			double powLo;
+			double powHi;
+			if (p == 0) {
+				powLo = powHi = 1;
+			} else if (lo >= 0 || p % 2 == 1) {
+				powLo = Math.pow(lo, p);
+				powHi = Math.pow(hi, p);
+			} else if (hi <= 0) {
+				powLo = Math.pow(hi, p);
+				powHi = Math.pow(lo, p);
+			} else {
+				powLo = 0;
+				powHi = Math.max(Math.pow(lo, p), Math.pow(hi, p));
+			}
+			// the product of both intervals
+			double a = min * powLo;
+			double b = min * powHi;
+			double c = max * powLo;
+			double d = max * powHi;
+			min = Math.min(Math.min(a, b), Math.min(c, d));
+			max = Math.max(Math.max(a, b), Math.max(c, d));
+			if (Math.abs(powLo) > EXACT_LIMIT || Math.abs(powHi) > EXACT_LIMIT 
+					|| Math.abs(min) > EXACT_LIMIT || Math.abs(max) > EXACT_LIMIT) return false;
+		}
+		bounds[0] = min;
+		bounds[1] = max;
+		return true;
+	}
+	
+	/**
+	 * Checks whether the given variable is a factor of the element
+	 * @param var a variable
+	 * @return true if the element depends on the variable
+	 */
+	boolean contains(Variable var) {
+		for (Variable factor : factors) if (factor == var) return true;
+		return false;
+	}
+	
+	/**
+	 * Return a String representation of the element
+	 * @return a String representation of the element
+	 */
+	public String toString(){
+		String out = ""+cnst;
+		
+		for (int i = 0; i < factors.length; i++) {
+			out +=" *" + factors[i].toString()+ "^" +powers[i];
+		}
+		return out;
+	}
+	
+}
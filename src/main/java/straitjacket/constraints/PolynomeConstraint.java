@@ -1,120 +1,363 @@
-package straitjacket.constraints;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-
-import straitjacket.Variable;
-
-/**
- * Representing Polynomeconstrains, so all Constrain of the form f(x) > < = rhs, 
- * where f(x) is a polynom 
- */
-public abstract class PolynomeConstraint extends EquationLikeConstraint {
-
-	/**
-	 * the list of elements that represents the polynom
-	 */
-    private final ArrayList<PolynomElement> elements;
-	
-	/**
-	 * Create a PolynomeConstraint with the Name name, a function consisting of
-	 * the elememts and with Rhs rhs  
-	 *  
-	 * @param name the name for the new Constraint
-	 * @param elems a list of elements that should build the function 
-	 * @param rhs the rhs for the new Constraint
-	 */
-    PolynomeConstraint(String name, int rhs, ArrayList<PolynomElement> elems) {
-		super(name, rhs);
-		elements=elems; 
-		
-		//search all involved from the elements
-		Iterator<PolynomElement> elemIter = elements.iterator();
-		variables=new HashSet<Variable>();				
-		while (elemIter.hasNext()) {
-            for (Variable variable : elemIter.next().variables) {
-                if (!variables.contains(variable)) variables.add(variable);
-            }
-		}
-	}
-	
-	/**
-	 * Decides wether the constraint is still satified with respect to the values of the variables 
-	 * given in valuations and by the tied values of variables. Take care to provide the correct 
-	 * variables in the parameter (they're compared by reference, not by name)
-	 * @param valuations a HashMap with variable assignments. 
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	@Override
-	public satisfaction holdsFor(HashMap<Variable,Integer> valuations) {
-		//fist we check whether all vars have a value 
-		for (Variable var : variables)	 {
-			// we respect the explicit valuations
-			if ( !valuations.containsKey( var ) ) {
-				// we respect wether a variable is tied to a value here or not
-				if (!var.isTiedToValue()) {
-					// if we don't have a tied variable here, look at the actual domains of the variable
-					switch (var.getDomain().getSet().size()) {
-						case 0: return satisfaction.FALSE;
-						case 1: var.tieToValue(var.getDomain().getMax()); break; //so we fix now
-						default: return satisfaction.DELAY;
-					}
-				}
-			}
-		}
-		
-			int lhs = 0;
-        for (PolynomElement element : elements) {
-            lhs += element.getValueWithRespectTo(valuations);
-        }
-			return operator(lhs,rhs) ? satisfaction.TRUE : satisfaction.FALSE; 
-	}
-	
-	/**
-	 * Decides whether the constraint is still satified with respect to the 
-	 * current domains of the involved variables. 
-	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
-	 */
-	@Override
-	public satisfaction holds() {
-		
-		for (Variable var : variables) {
-			// all vars have to be tied
-			if (!var.isTiedToValue()) {
-				// if we don't have a tied variable here, look at the actual domains of the variable
-				switch (var.getDomain().getSet().size()) {
-					case 0: return satisfaction.FALSE;//empty Domain
-					case 1: var.tieToValue(var.getDomain().getMax()); break; //so we fix now
-					default: return satisfaction.DELAY;
-				}
-			}
-		}
-		// now we now that each var ist tied, now we build the lhs
-		int lhs = 0;
-        for (PolynomElement element : elements) {
-            lhs += element.getValue();
-        }
-		return operator(lhs,rhs) ? satisfaction.TRUE : satisfaction.FALSE; 
-	}
-
-	/**
-	 * Return a string representation of the constraint
-	 * 
-	 * @return a string representation of the constraint
-	 */
-	@Override
-	public String toString() {
-		String out = this.getName() + ": ";
-		boolean first = true;
-        for (PolynomElement element : elements) {
-            if (first) first = false;
-            else out += " + ";
-            out += element.toString() + " ";
-        }
-		out += " " + this.operatorSign() + " " + this.rhs; 		
-		return out;
-	}
-
-}
+package straitjacket.constraints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import straitjacket.Domain;
+import straitjacket.SolverState;
+import straitjacket.Variable;
+
+/**
+ * Representing Polynomeconstrains, so all Constrain of the form f(x) > < = rhs, 
+ * where f(x) is a polynom 
+ */
+public abstract class PolynomeConstraint extends EquationLikeConstraint {
+
+	/**
+	 * the list of elements that represents the polynom
+	 */
+    private final ArrayList<PolynomElement> elements;
+    
+    /**
+     * true if all elements take integer values only, so the constraint can be propagated by bounds
+     */
+    private final boolean integral;
+    
+	/**
+	 * The bounds of the elements for the propagation, kept in the state of a search 
+	 * (see SolverState.getConstraintData(Constraint)) so a propagation does not allocate them again
+	 */
+	private static class ElementBounds {
+		
+		/**
+		 * the smallest value of every element
+		 */
+		final double[] elementMin;
+		
+		/**
+		 * the largest value of every element
+		 */
+		final double[] elementMax;
+		
+		/**
+		 * the smallest and the largest value of the polynom
+		 */
+		final double[] bounds = new double[2];
+		
+		/**
+		 * room for the bounds of one element
+		 */
+		final double[] scratch = new double[2];
+		
+		/**
+		 * Creates the bounds of the given number of elements
+		 * @param n the number of elements
+		 */
+		ElementBounds(int n) {
+			elementMin = new double[n];
+			elementMax = new double[n];
+		}
+	}
+	
+	/**
+	 * Create a PolynomeConstraint with the Name name, a function consisting of
+	 * the elememts and with Rhs rhs  
+	 *  
+	 * @param name the name for the new Constraint
+	 * @param elems a list of elements that should build the function 
+	 * @param rhs the rhs for the new Constraint
+	 */
+    PolynomeConstraint(String name, int rhs, ArrayList<PolynomElement> elems) {
+		super(name, rhs);
+		elements=elems; 
+		
+		//search all involved from the elements
+		Iterator<PolynomElement> elemIter = elements.iterator();
+		variables=new HashSet<Variable>();				
+		while (elemIter.hasNext()) {
+            for (Variable variable : elemIter.next().variables) {
+                if (!variables.contains(variable)) variables.add(variable);
+            }
+		}
+		boolean integral = true;
+		for (PolynomElement element : elements) integral &= element.isIntegral();
+		this.integral = integral;
+	}
+	
+	/**
+	 * Returns the smallest value of the polynom the constraint allows, for the bounds propagation
+	 * @return the smallest allowed value, Long.MIN_VALUE if there is no lower limit
+	 */
+	protected long getLhsLowerLimit() {
+		return Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Returns the largest value of the polynom the constraint allows, for the bounds propagation
+	 * @return the largest allowed value, Long.MAX_VALUE if there is no upper limit
+	 */
+	protected long getLhsUpperLimit() {
+		return Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Decides wether the constraint is still satified with respect to the values of the variables 
+	 * given in valuations and by the tied values of variables. Take care to provide the correct 
+	 * variables in the parameter (they're compared by reference, not by name)
+	 * @param state the state of the search, holding the domains and tied values
+	 * @param valuations a HashMap with variable assignments. 
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	@Override
+	public satisfaction holdsFor(SolverState state, HashMap<Variable,Integer> valuations) {
+		//fist we check whether all vars have a value 
+		for (Variable var : variables)	 {
+			// we respect the explicit valuations
+			if ( !valuations.containsKey( var ) ) {
+				// we respect wether a variable is tied to a value here or not
+				if (!state.isTiedToValue(var)) {
+					// if we don't have a tied variable here, look at the actual domains of the variable
+					switch (state.getDomain(var).size()) {
+						case 0: return satisfaction.FALSE;
+						case 1: break; // the only value left counts as fixed
+						default: return satisfaction.DELAY;
+					}
+				}
+			}
+		}
+		
+		double lhs = 0;
+        for (PolynomElement element : elements) {
+            lhs += element.getValueWithRespectTo(state, valuations);
+        }
+		return decide(lhs);
+	}
+	
+	/**
+	 * Decides whether the constraint is still satified with respect to the 
+	 * current domains of the involved variables. 
+	 * @param state the state of the search, holding the domains and tied values
+	 * @return one of TRUE (satisfied), FALSE (dissatisfied), DELAYED (not determinable yet)
+	 */
+	@Override
+	public satisfaction holds(SolverState state) {
+		
+		for (Variable var : variables) {
+			// all vars have to be tied
+			if (!state.isTiedToValue(var)) {
+				// if we don't have a tied variable here, look at the actual domains of the variable
+				switch (state.getDomain(var).size()) {
+					case 0: return satisfaction.FALSE;//empty Domain
+					case 1: break; // the only value left counts as fixed
+					default: return satisfaction.DELAY;
+				}
+			}
+		}
+		// now we now that each var ist tied or has a single value, now we build the lhs
+		double lhs = 0;
+        for (PolynomElement element : elements) {
+            lhs += element.getValue(state);
+        }
+		return decide(lhs);
+	}
+	
+	/**
+	 * Decides the operator for the value of the polynom, which is summed up in a double. 
+	 * Within the range of an int the value is truncated to it, beyond the limits of the
+	 * polynom decide, or without limits the operator with the nearest int.
+	 * @param lhs the value of the polynom
+	 * @return TRUE if the constraint holds for the value, FALSE otherwise
+	 */
+	private satisfaction decide(double lhs) {
+		if (lhs >= Integer.MIN_VALUE && lhs <= Integer.MAX_VALUE) return operator((int)lhs, rhs) ? satisfaction.TRUE : satisfaction.FALSE;
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE) {
+			return operator(lhs < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE, rhs) ? satisfaction.TRUE : satisfaction.FALSE;
+		}
+		return lhs >= lower && lhs <= upper ? satisfaction.TRUE : satisfaction.FALSE;
+	}
+
+	/**
+	 * Makes the constraint bounds consistent with interval arithmetic. Every element is bounded over
+	 * the current domains, see PolynomElement#getBounds(), and the polynom lies between the sums of 
+	 * these bounds. The smallest and the largest value of every free variable is removed as long as
+	 * the polynom can't reach the limits with the variable fixed to it, and the passes are repeated
+	 * until no bound changes. As an element needs not be monotone in a variable, only the ends of
+	 * the domains are looked at. Elements with fractional coefficients or powers, polynoms whose bounds
+	 * are not exact in a double and constraints without limits are revised like any other constraint.
+	 * The bounds of the elements are kept in the state of the search.
+	 * @param state the state of the search, whose domains are narrowed
+	 * @return the variables whose domains have changed
+	 * @see straitjacket.Constraint#makeArcConsistent(SolverState)
+	 */
+	@Override
+	public Collection<Variable> makeArcConsistent(SolverState state) {
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (!integral || (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE)) return super.makeArcConsistent(state);
+		
+		ArrayList<Variable> changedVars = new ArrayList<Variable>();
+		for (Variable var : variables) {
+			if (!state.isTiedToValue(var) && state.getDomain(var).isEmpty()) {
+				changedVars.add(var);
+				return changedVars;
+			}
+		}
+		ElementBounds data = getElementBounds(state);
+		double[] elementMin = data.elementMin;
+		double[] elementMax = data.elementMax;
+		double[] bounds = data.bounds;
+		double[] scratch = data.scratch;
+		// the domains only shrink, so bounds that are exact once stay exact
+		if (!getSumBounds(state, elementMin, elementMax, bounds)) return super.makeArcConsistent(state);
+		
+		boolean again = true;
+		while (again) {
+			again = false;
+			if (bounds[0] > upper || bounds[1] < lower) {
+				// no combination of the values left can satisfy the constraint
+				for (Variable var : variables) {
+					if (!state.isTiedToValue(var) && !state.getDomain(var).isEmpty()) {
+						state.getDomain(var).clear();
+						changedVars.add(var);
+					}
+				}
+				return changedVars;
+			}
+			for (Variable var : variables) {
+				if (state.isTiedToValue(var)) continue;
+				Domain domain = state.getDomain(var);
+				boolean narrowed = false;
+				while (!domain.isEmpty() && !canReachLimits(state, var, domain.min(), elementMin, elementMax, lower, upper, scratch)) {
+					narrowed |= domain.remove(domain.min());
+				}
+				while (!domain.isEmpty() && !canReachLimits(state, var, domain.max(), elementMin, elementMax, lower, upper, scratch)) {
+					narrowed |= domain.remove(domain.max());
+				}
+				if (!narrowed) continue;
+				if (!changedVars.contains(var)) changedVars.add(var);
+				if (domain.isEmpty()) return changedVars;
+				getSumBounds(state, elementMin, elementMax, bounds);
+				again = true;
+			}
+		}
+		return changedVars;
+	}
+	
+	/**
+	 * The constraint is entailed if every value the polynom can take over the domains lies within the limits
+	 * @param state the state of the search
+	 * @return true if the constraint is guaranteed to hold
+	 * @see straitjacket.Constraint#isEntailed(SolverState)
+	 */
+	@Override
+	public boolean isEntailed(SolverState state) {
+		long lower = getLhsLowerLimit();
+		long upper = getLhsUpperLimit();
+		if (!integral || (lower == Long.MIN_VALUE && upper == Long.MAX_VALUE)) return false;
+		for (Variable var : variables) {
+			if (!state.isTiedToValue(var) && state.getDomain(var).isEmpty()) return false;
+		}
+		ElementBounds data = getElementBounds(state);
+		double[] bounds = data.bounds;
+		if (!getSumBounds(state, data.elementMin, data.elementMax, bounds)) return false;
+		return bounds[0] >= lower && bounds[1] <= upper;
+	}
+	
+	/**
+	 * Returns the bounds of the elements this constraint keeps in the given state, they are created
+	 * on the first call. A constraint which is not part of the model of the state gets new ones.
+	 * @param state the state of the search
+	 * @return the bounds of the elements
+	 */
+	private ElementBounds getElementBounds(SolverState state) {
+		int position = state.getModel().getPosition(this);
+		ElementBounds data = position < 0 ? null : (ElementBounds)state.getConstraintData(this);
+		if (data == null) {
+			data = new ElementBounds(elements.size());
+			if (position >= 0) state.setConstraintData(this, data);
+		}
+		return data;
+	}
+	
+	/**
+	 * Bounds every element and the whole polynom over the current domains
+	 * @param state the state of the search, none of the domains may be empty
+	 * @param elementMin where the smallest values of the elements are stored
+	 * @param elementMax where the largest values of the elements are stored
+	 * @param bounds where the smallest and the largest value of the polynom are stored
+	 * @return false if the bounds are not exact
+	 */
+	private boolean getSumBounds(SolverState state, double[] elementMin, double[] elementMax, double[] bounds) {
+		double sumMin = 0;
+		double sumMax = 0;
+		// the sums are exact as long as every partial sum stays within the integers of a double
+		double magnitude = 0;
+		for (int k = 0; k < elements.size(); k++) {
+			if (!elements.get(k).getBounds(state, null, 0, bounds)) return false;
+			elementMin[k] = bounds[0];
+			elementMax[k] = bounds[1];
+			sumMin += bounds[0];
+			sumMax += bounds[1];
+			magnitude += Math.max(Math.abs(bounds[0]), Math.abs(bounds[1]));
+		}
+		if (magnitude > PolynomElement.EXACT_LIMIT) return false;
+		bounds[0] = sumMin;
+		bounds[1] = sumMax;
+		return true;
+	}
+	
+	/**
+	 * Checks whether the polynom can still take a value within the limits if the given variable is fixed to the given value
+	 * @param state the state of the search
+	 * @param var a free variable of the constraint
+	 * @param value a value of the variable
+	 * @param elementMin the smallest values of the elements over the current domains
+	 * @param elementMax the largest values of the elements over the current domains
+	 * @param lower the smallest allowed value of the polynom
+	 * @param upper the largest allowed value of the polynom
+	 * @param bounds room for the bounds of one element
+	 * @return false if the value can be removed
+	 */
+	private boolean canReachLimits(SolverState state, Variable var, int value, double[] elementMin, double[] elementMax, 
+			long lower, long upper, double[] bounds) {
+		double sumMin = 0;
+		double sumMax = 0;
+		for (int k = 0; k < elements.size(); k++) {
+			PolynomElement element = elements.get(k);
+			if (element.contains(var)) {
+				// the bounds of the element over a subset of the domains are exact as well
+				element.getBounds(state, var, value, bounds);
+				sumMin += bounds[0];
+				sumMax += bounds[1];
+			} else {
+				sumMin += elementMin[k];
+				sumMax += elementMax[k];
+			}
+		}
+		return sumMin <= upper && sumMax >= lower;
+	}
+	
+	/**
+	 * Return a string representation of the constraint
+	 * 
+	 * @return a string representation of the constraint
+	 */
+	@Override
+	public String toString() {
+		String out = this.getName() + ": ";
+		boolean first = true;
+        for (PolynomElement element : elements) {
+            if (first) first = false;
+            else out += " + ";
+            out += element.toString() + " ";
+        }
+		out += " " + this.operatorSign() + " " + this.rhs; 		
+		return out;
+	}
+
+}
@@ -0,0 +1,142 @@
+package straitjacket.domains;
+
+import java.util.BitSet;
+
+import straitjacket.Domain;
+
+/** 
+ * A domain that keeps its values in a BitSet. The bits are counted from the smallest
+ * initial value on, so dense ranges far from zero or below zero are fine, but it 
+ * needs memory proportional to the distance of the smallest and the largest value. 
+ */
+public class BitSetDomain extends Domain {
+	
+	/** 
+	 * A bitset which actually repesents the domain (as set of possible values)
+	 * bit i is set iff offset+i is a possible value
+	 */	
+	private final BitSet set;
+	
+	/**
+	 * the value represented by the first bit of the set
+	 */
+	private final int offset;
+	
+	/** 
+	 * Creates a new empty Domain. So a Variable with this Domain has no possible allocation.  
+	 */
+	public BitSetDomain () {
+		set = new BitSet(); 
+		offset = 0;
+		initialize(0);
+	}
+	
+	/** 
+	 * Creates a new Domain with the values of elements.
+	 * @param elements the list of possible values 
+	 */	
+	public BitSetDomain (int[] elements) {
+		int min = elements.length > 0 ? Integer.MAX_VALUE : 0;
+		for (int i : elements) min = Math.min(min, i);
+		set = new BitSet();
+		offset = min;
+		for (int i : elements) {
+			this.set.set(i - offset);
+		}
+		initialize(set.cardinality());
+	}
+	
+	/**
+	 * Define the domain as a range containing value from [lb, ub]
+	 * @param lb lower bound of the range
+	 * @param ub upper bound of the range
+	 */
+	public BitSetDomain (int lb, int ub) {
+		set = new BitSet();
+		offset = lb;
+		if (lb <= ub) set.set(0, ub - lb + 1);
+		initialize(set.cardinality());
+	}
+
+	/**
+	 * Creates a copy of the given domain
+	 * @param other the domain to copy
+	 */
+	private BitSetDomain (BitSetDomain other) {
+		set = (BitSet)other.set.clone();
+		offset = other.offset;
+		initialize(other.size());
+	}
+	
+	/**
+	 * @see Domain#copy(DomainStore)
+	 */
+	@Override
+	public Domain copy(DomainStore store) {
+		return new BitSetDomain(this);
+	}
+	
+	/**
+	 * @see Domain#contains(int)
+	 */
+	@Override
+	public boolean contains(int value) {
+		long i = (long)value - offset;
+		return i >= 0 && i < set.size() && set.get((int)i);
+	}
+
+	/**
+	 * @see Domain#getWord(int)
+	 */
+	@Override
+	public long getWord(int value) {
+		long from = (long)value - offset;
+		if (from <= -64 || from > Integer.MAX_VALUE) return 0;
+		long word = 0;
+		for (int i = set.nextSetBit(from < 0 ? 0 : (int)from); i >= 0 && i - from < 64; i = set.nextSetBit(i + 1)) {
+			word |= 1L << (i - from);
+		}
+		return word;
+	}
+
+	/**
+	 * @see Domain#removeValue(int)
+	 */
+	@Override
+	protected boolean removeValue(int value) {
+		if (!contains(value)) return false;
+		set.clear(value - offset);
+		return true;
+	}
+
+	/**
+	 * @see Domain#restoreValue(int)
+	 */
+	@Override
+	protected void restoreValue(int value) {
+		set.set(value - offset);
+	}
+
+	/**
+	 * @see Domain#nextValue(int)
+	 */
+	@Override
+	public int nextValue(int value) {
+		long from = (long)value - offset + 1;
+		if (from >= set.size()) return NO_VALUE;
+		int next = set.nextSetBit(from < 0 ? 0 : (int)from);
+		return next < 0 ? NO_VALUE : offset + next;
+	}
+
+	/**
+	 * @see Domain#previousValue(int)
+	 */
+	@Override
+	protected int previousValue(int value) {
+		// BitSet has no backward search (in Java 6), so start at the highest set bit
+		int i = (int)Math.min((long)value - offset, set.length()) - 1;
+		while (i >= 0 && !set.get(i)) i--;
+		return i < 0 ? NO_VALUE : offset + i;
+	}
+	
+}
@@ -0,0 +1,145 @@
+package straitjacket.domains;
+
+import straitjacket.Domain;
+
+/**
+ * Chooses the representation of a new domain by the values it has to hold.
+ * Values from [0, 63] go into a WordDomain, dense ranges anywhere else into a BitSetDomain
+ * starting at the smallest value, and everything spanning more than MAX_DENSE_SPAN values
+ * into an IntervalDomain, whose memory only grows with the number of holes.
+ * A ConstraintSet may choose another representation for all its variables, see AvailableDomains.
+ * The PACKED representation puts the words of all domains into the DomainStore of the ConstraintSet.
+ */
+public class DomainFactory {
+
+	public static enum AvailableDomains {
+		AUTOMATIC("automatic") {
+			public Domain instanciate(DomainStore store, int lb, int ub) { return createDomain(lb, ub); }
+			public Domain instanciate(DomainStore store, int[] elements) { return createDomain(elements); }
+		},
+		// the index of a sparse set needs an entry per value of the span, huge spans get an interval list
+		SPARSE_SET("sparse set") {
+			public Domain instanciate(DomainStore store, int lb, int ub) { 
+				checkMax(ub);
+				if (lb <= ub && (long)ub - lb >= MAX_DENSE_SPAN) return new IntervalDomain(lb, ub);
+				return new SparseSetDomain(lb, ub); 
+			}
+			public Domain instanciate(DomainStore store, int[] elements) { 
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for (int i : elements) {
+					min = Math.min(min, i);
+					max = Math.max(max, i);
+				}
+				checkMax(max);
+				if (elements.length > 0 && (long)max - min >= MAX_DENSE_SPAN) return new IntervalDomain(elements);
+				return new SparseSetDomain(elements); 
+			}
+		},
+		// all words in one arena of the ConstraintSet, huge spans get an interval list
+		PACKED("packed") {
+			public Domain instanciate(DomainStore store, int lb, int ub) { 
+				checkMax(ub);
+				if (lb <= ub && (long)ub - lb >= MAX_DENSE_SPAN) return new IntervalDomain(lb, ub);
+				return new PackedDomain(store, lb, ub); 
+			}
+			public Domain instanciate(DomainStore store, int[] elements) { 
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for (int i : elements) {
+					min = Math.min(min, i);
+					max = Math.max(max, i);
+				}
+				checkMax(max);
+				if (elements.length > 0 && (long)max - min >= MAX_DENSE_SPAN) return new IntervalDomain(elements);
+				return new PackedDomain(store, elements); 
+			}
+		};
+		
+		private final String name;
+		
+		AvailableDomains(String name) {
+			this.name = name;
+		}
+		
+		public String toString() {
+			return this.name;
+		}
+		
+		/**
+		 * Creates a domain containing the values from [lb, ub].
+		 * @param store the store of the ConstraintSet, for representations sharing memory
+		 * @param lb lower bound of the range
+		 * @param ub upper bound of the range
+		 * @return a new domain containing the range
+		 * @throws IllegalArgumentException if ub is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+		 */
+		public abstract Domain instanciate(DomainStore store, int lb, int ub);
+		
+		/**
+		 * Creates a domain containing the given values.
+		 * @param store the store of the ConstraintSet, for representations sharing memory
+		 * @param elements the list of possible values
+		 * @return a new domain containing the values
+		 * @throws IllegalArgumentException if a value is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+		 */
+		public abstract Domain instanciate(DomainStore store, int[] elements);
+	}
+
+	/**
+	 * the largest distance between the smallest and the largest value (plus one)
+	 * for which a bitset is used
+	 */
+	public static final int MAX_DENSE_SPAN = 4096;
+
+	/**
+	 * Creates a domain containing the values from [lb, ub].
+	 * @param lb lower bound of the range
+	 * @param ub upper bound of the range
+	 * @return a new domain containing the range
+	 * @throws IllegalArgumentException if ub is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+	 */
+	public static Domain createDomain(int lb, int ub) {
+		checkMax(ub);
+		if (lb > ub || (lb >= 0 && ub < WordDomain.CAPACITY)) return new WordDomain(lb, ub);
+		if ((long)ub - lb < MAX_DENSE_SPAN) return new BitSetDomain(lb, ub);
+		return new IntervalDomain(lb, ub);
+	}
+
+	/**
+	 * Creates a domain containing the given values.
+	 * @param elements the list of possible values
+	 * @return a new domain containing the values
+	 * @throws IllegalArgumentException if a value is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+	 */
+	public static Domain createDomain(int[] elements) {
+		if (elements.length == 0) return createEmptyDomain();
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i : elements) {
+			min = Math.min(min, i);
+			max = Math.max(max, i);
+		}
+		checkMax(max);
+		if (min >= 0 && max < WordDomain.CAPACITY) return new WordDomain(elements);
+		if ((long)max - min < MAX_DENSE_SPAN) return new BitSetDomain(elements);
+		return new IntervalDomain(elements);
+	}
+
+	/**
+	 * Rejects the largest value of a new domain if no domain can hold it
+	 * @param max the largest value of the domain
+	 * @throws IllegalArgumentException if the value is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+	 */
+	static void checkMax(int max) {
+		if (max == Domain.NO_VALUE) throw new IllegalArgumentException("A domain can't hold " + max + ", it stands for no value");
+	}
+
+	/**
+	 * Creates an empty domain
+	 * @return a new domain without any value
+	 */
+	public static Domain createEmptyDomain() {
+		return new WordDomain();
+	}
+}
@@ -0,0 +1,118 @@
+package straitjacket.domains;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An arena that packs the bit words of all PackedDomains of a ConstraintSet or a SolverState contiguously 
+ * into one long array. Each domain gets a slot, numbered densely in the order the domains 
+ * are created, and a fixed range of words in the arena. Checks and propagation then touch 
+ * sequential memory, and instead of recording single values on the trail the store saves 
+ * the words of all its domains with one bulk copy per backtracking level.
+ */
+public class DomainStore {
+	
+	/**
+	 * the words of all domains, each domain owns a fixed range of them
+	 */
+	long[] words = new long[64];
+	
+	/**
+	 * the number of words in use
+	 */
+	private int used = 0;
+	
+	/**
+	 * the domains living in this store, by slot
+	 */
+	private final ArrayList<PackedDomain> domains = new ArrayList<PackedDomain>();
+	
+	/**
+	 * the saved words, one copy for every level on which a packed domain changed
+	 */
+	private long[][] savedWords = new long[16][];
+	
+	/**
+	 * the trail stamps of the levels the copies were saved on
+	 */
+	private int[] savedStamps = new int[16];
+	
+	/**
+	 * the number of saved copies
+	 */
+	private int saved = 0;
+	
+	/**
+	 * Reserves the given number of (cleared) words for a new domain
+	 * @param domain the domain the words are for
+	 * @param count the number of words
+	 * @return the index of the first reserved word
+	 */
+	int allocate(PackedDomain domain, int count) {
+		if (saved > 0) throw new IllegalStateException("Domains can not be added to a store during the search.");
+		if (used + count > words.length) {
+			words = Arrays.copyOf(words, Math.max(2 * words.length, used + count));
+		}
+		int start = used;
+		used += count;
+		domains.add(domain);
+		return start;
+	}
+	
+	/**
+	 * Saves the words of all domains, if they have not been saved on the level with the given stamp yet.
+	 * The store is called right after a removal, so the removed bit is put back into the copy.
+	 * @param stamp the stamp of the open trail level
+	 * @param word the index of the word the removed bit belongs to
+	 * @param bit the removed bit 
+	 * @return true if a copy was saved, which has to be recorded on the trail 
+	 */
+	boolean save(int stamp, int word, long bit) {
+		if (saved > 0 && savedStamps[saved-1] == stamp) return false;
+		if (saved == savedStamps.length) {
+			savedWords = Arrays.copyOf(savedWords, 2 * saved);
+			savedStamps = Arrays.copyOf(savedStamps, 2 * saved);
+		}
+		// copies of levels left before are reused
+		long[] copy = savedWords[saved];
+		if (copy == null || copy.length < used) copy = savedWords[saved] = new long[used];
+		System.arraycopy(words, 0, copy, 0, used);
+		copy[word] |= bit;
+		savedStamps[saved++] = stamp;
+		return true;
+	}
+	
+	/**
+	 * Puts back the words of the last saved level with one bulk copy and recomputes the 
+	 * cached sizes and bounds of all domains.
+	 */
+	void restore() {
+		System.arraycopy(savedWords[--saved], 0, words, 0, used);
+		for (PackedDomain domain : domains) domain.resync();
+	}
+	
+	/**
+	 * Returns the number of domains living in this store
+	 * @return the number of slots
+	 */
+	public int getNumberOfDomains() {
+		return domains.size();
+	}
+	
+	/**
+	 * Returns the domain in the given slot
+	 * @param slot the slot of the domain
+	 * @return the domain
+	 */
+	public PackedDomain getDomain(int slot) {
+		return domains.get(slot);
+	}
+	
+	/**
+	 * Returns the number of words used by all domains
+	 * @return the number of words in use
+	 */
+	public int size() {
+		return used;
+	}
+}
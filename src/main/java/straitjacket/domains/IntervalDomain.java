@@ -0,0 +1,219 @@
+package straitjacket.domains;
+
+import java.util.Arrays;
+
+import straitjacket.Domain;
+
+/** 
+ * A domain that keeps its values as a sorted list of disjoint intervals. The memory it
+ * needs is proportional to the number of holes, not to the number of values, so it
+ * suits huge ranges (capacities, timestamps) and negative values.
+ * Removing or restoring a value costs a binary search plus, if an interval has to be
+ * split or two intervals merge, a shift of the intervals behind it. 
+ */
+public class IntervalDomain extends Domain {
+	
+	/**
+	 * lows[i] is the smallest value of the i-th interval
+	 */
+	private int[] lows;
+	
+	/**
+	 * highs[i] is the largest value of the i-th interval
+	 */
+	private int[] highs;
+	
+	/**
+	 * the number of intervals
+	 */
+	private int count;
+	
+	/** 
+	 * Creates a new empty Domain. So a Variable with this Domain has no possible allocation.  
+	 */
+	public IntervalDomain () {
+		lows = new int[1];
+		highs = new int[1];
+		count = 0;
+		initialize(0);
+	}
+	
+	/**
+	 * Define the domain as a range containing value from [lb, ub]
+	 * @param lb lower bound of the range
+	 * @param ub upper bound of the range
+	 * @throws IllegalArgumentException if ub is Integer.MAX_VALUE, which stands for Domain.NO_VALUE,
+	 *         or the range holds more than Integer.MAX_VALUE values
+	 */
+	public IntervalDomain (int lb, int ub) {
+		lows = new int[1];
+		highs = new int[1];
+		count = 0;
+		if (lb <= ub) {
+			DomainFactory.checkMax(ub);
+			if ((long)ub - lb >= Integer.MAX_VALUE) throw new IllegalArgumentException("A domain can't hold more than " + Integer.MAX_VALUE + " values");
+			lows[0] = lb;
+			highs[0] = ub;
+			count = 1;
+		}
+		initialize(count == 0 ? 0 : ub - lb + 1);
+	}
+	
+	/** 
+	 * Creates a new Domain with the values of elements.
+	 * @param elements the list of possible values 
+	 * @throws IllegalArgumentException if a value is Integer.MAX_VALUE, which stands for Domain.NO_VALUE
+	 */	
+	public IntervalDomain (int[] elements) {
+		lows = new int[1];
+		highs = new int[1];
+		count = 0;
+		int size = 0;
+		int[] sorted = elements.clone();
+		Arrays.sort(sorted);
+		if (sorted.length > 0) DomainFactory.checkMax(sorted[sorted.length - 1]);
+		for (int v : sorted) {
+			if (count > 0 && highs[count-1] >= v) continue; // duplicate value
+			if (count > 0 && highs[count-1] == v - 1) highs[count-1] = v;
+			else insertInterval(count, v, v);
+			size++;
+		}
+		initialize(size);
+	}
+	
+	/**
+	 * Finds the first interval whose largest value is not smaller than the given value
+	 * @param value the value to look for
+	 * @return the index of that interval, or count if there is none
+	 */
+	private int search(int value) {
+		int lo = 0, hi = count;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (highs[mid] < value) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+	
+	/**
+	 * Inserts a new interval at the given position, shifting all intervals behind it
+	 */
+	private void insertInterval(int index, int low, int high) {
+		if (count == lows.length) {
+			lows = Arrays.copyOf(lows, 2 * count);
+			highs = Arrays.copyOf(highs, 2 * count);
+		}
+		System.arraycopy(lows, index, lows, index + 1, count - index);
+		System.arraycopy(highs, index, highs, index + 1, count - index);
+		lows[index] = low;
+		highs[index] = high;
+		count++;
+	}
+	
+	/**
+	 * Deletes the interval at the given position, shifting all intervals behind it
+	 */
+	private void deleteInterval(int index) {
+		System.arraycopy(lows, index + 1, lows, index, count - index - 1);
+		System.arraycopy(highs, index + 1, highs, index, count - index - 1);
+		count--;
+	}
+
+	/**
+	 * Creates a copy of the given domain
+	 * @param other the domain to copy
+	 */
+	private IntervalDomain (IntervalDomain other) {
+		lows = Arrays.copyOf(other.lows, Math.max(1, other.count));
+		highs = Arrays.copyOf(other.highs, Math.max(1, other.count));
+		count = other.count;
+		initialize(other.size());
+	}
+	
+	/**
+	 * @see Domain#copy(DomainStore)
+	 */
+	@Override
+	public Domain copy(DomainStore store) {
+		return new IntervalDomain(this);
+	}
+	
+	/**
+	 * @see Domain#contains(int)
+	 */
+	@Override
+	public boolean contains(int value) {
+		int i = search(value);
+		return i < count && lows[i] <= value;
+	}
+
+	/**
+	 * @see Domain#removeValue(int)
+	 */
+	@Override
+	protected boolean removeValue(int value) {
+		int i = search(value);
+		if (i == count || lows[i] > value) return false;
+		if (lows[i] == highs[i]) deleteInterval(i);
+		else if (lows[i] == value) lows[i]++;
+		else if (highs[i] == value) highs[i]--;
+		else {
+			// split the interval into [low, value-1] and [value+1, high]
+			insertInterval(i + 1, value + 1, highs[i]);
+			highs[i] = value - 1;
+		}
+		return true;
+	}
+
+	/**
+	 * @see Domain#restoreValue(int)
+	 */
+	@Override
+	protected void restoreValue(int value) {
+		int i = search(value);
+		// the value is missing, so interval i (if any) lies completely above it
+		boolean joinsLower = i > 0 && highs[i-1] == value - 1;
+		boolean joinsUpper = i < count && lows[i] == value + 1;
+		if (joinsLower && joinsUpper) {
+			highs[i-1] = highs[i];
+			deleteInterval(i);
+		} 
+		else if (joinsLower) highs[i-1] = value;
+		else if (joinsUpper) lows[i] = value;
+		else insertInterval(i, value, value);
+	}
+
+	/**
+	 * @see Domain#nextValue(int)
+	 */
+	@Override
+	public int nextValue(int value) {
+		if (value == NO_VALUE) return NO_VALUE;
+		int i = search(value + 1);
+		if (i == count) return NO_VALUE;
+		return Math.max(lows[i], value + 1);
+	}
+
+	/**
+	 * @see Domain#previousValue(int)
+	 */
+	@Override
+	protected int previousValue(int value) {
+		if (value == Integer.MIN_VALUE) return NO_VALUE;
+		// the last interval whose smallest value lies below the given value
+		int i = search(value - 1);
+		if (i == count || lows[i] > value - 1) i--;
+		if (i < 0) return NO_VALUE;
+		return Math.min(highs[i], value - 1);
+	}
+	
+	/**
+	 * Returns the number of intervals the domain consists of
+	 * @return the number of intervals
+	 */
+	public int getIntervalCount() {
+		return count;
+	}
+	
+}
@@ -0,0 +1,230 @@
+package straitjacket.domains;
+
+import straitjacket.Domain;
+
+/** 
+ * A domain whose bits live in the shared arena of a DomainStore. Like a BitSetDomain
+ * the bits are counted from the smallest initial value on. 
+ */
+public class PackedDomain extends Domain {
+	
+	/**
+	 * the store holding the words of this domain
+	 */
+	private final DomainStore store;
+	
+	/**
+	 * the index of the first word of this domain in the store
+	 */
+	private final int start;
+	
+	/**
+	 * the number of words of this domain
+	 */
+	private final int length;
+	
+	/**
+	 * the value represented by the first bit
+	 */
+	private final int offset;
+	
+	/**
+	 * the slot of the domain in its store
+	 */
+	private final int slot;
+	
+	/**
+	 * Define the domain as a range containing value from [lb, ub]
+	 * @param store the store to put the words into
+	 * @param lb lower bound of the range
+	 * @param ub upper bound of the range
+	 */
+	public PackedDomain (DomainStore store, int lb, int ub) {
+		this.store = store;
+		this.offset = lb;
+		int span = lb <= ub ? ub - lb + 1 : 0;
+		this.length = (span + 63) >>> 6;
+		this.slot = store.getNumberOfDomains();
+		this.start = store.allocate(this, length);
+		for (int i = 0; i < span; i++) store.words[start + (i >>> 6)] |= 1L << i;
+		initialize(span);
+	}
+	
+	/** 
+	 * Creates a new Domain with the values of elements.
+	 * @param store the store to put the words into
+	 * @param elements the list of possible values 
+	 */	
+	public PackedDomain (DomainStore store, int[] elements) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i : elements) {
+			min = Math.min(min, i);
+			max = Math.max(max, i);
+		}
+		this.store = store;
+		this.offset = elements.length > 0 ? min : 0;
+		this.length = elements.length > 0 ? ((max - min) >>> 6) + 1 : 0;
+		this.slot = store.getNumberOfDomains();
+		this.start = store.allocate(this, length);
+		for (int i : elements) store.words[start + ((i - offset) >>> 6)] |= 1L << (i - offset);
+		initialize(count());
+	}
+	
+	/**
+	 * Returns the slot of this domain in its store
+	 * @return the slot
+	 */
+	public int getSlot() {
+		return slot;
+	}
+	
+	/**
+	 * Counts the set bits of this domain
+	 */
+	private int count() {
+		int count = 0;
+		long[] words = store.words;
+		for (int w = start; w < start + length; w++) count += Long.bitCount(words[w]);
+		return count;
+	}
+	
+	/**
+	 * Recomputes the cached size and bounds after the store has put back a saved level
+	 */
+	void resync() {
+		int size = count();
+		if (size == 0) restoreState(0, NO_VALUE, Integer.MIN_VALUE);
+		else restoreState(size, nextValue(Integer.MIN_VALUE), previousValue(NO_VALUE));
+	}
+
+	/**
+	 * Lets the store save the words of all its domains on the first removal of a level
+	 * @see Domain#trailRemoval(int)
+	 */
+	@Override
+	protected void trailRemoval(int value) {
+		int stamp = getTrailStamp();
+		if (stamp == 0) return;
+		int i = value - offset;
+		if (store.save(stamp, start + (i >>> 6), 1L << i)) recordOnTrail(slot);
+	}
+	
+	/**
+	 * Puts back the words of all domains of the store, as saved on the level left
+	 * @see Domain#restore(int)
+	 */
+	@Override
+	protected void restore(int value) {
+		store.restore();
+	}
+
+	/**
+	 * Creates a copy of the given domain in the given store
+	 * @param store the store to put the words into
+	 * @param other the domain to copy
+	 */
+	private PackedDomain (DomainStore store, PackedDomain other) {
+		this.store = store;
+		this.offset = other.offset;
+		this.length = other.length;
+		this.slot = store.getNumberOfDomains();
+		this.start = store.allocate(this, length);
+		System.arraycopy(other.store.words, other.start, store.words, start, length);
+		initialize(other.size());
+	}
+	
+	/**
+	 * Creates a copy of this domain, whose words go into the given store
+	 * @see Domain#copy(DomainStore)
+	 */
+	@Override
+	public Domain copy(DomainStore store) {
+		return new PackedDomain(store, this);
+	}
+	
+	/**
+	 * @see Domain#contains(int)
+	 */
+	@Override
+	public boolean contains(int value) {
+		long i = (long)value - offset;
+		if (i < 0 || i >= ((long)length << 6)) return false;
+		return (store.words[start + (int)(i >>> 6)] & (1L << i)) != 0;
+	}
+
+	/**
+	 * @see Domain#getWord(int)
+	 */
+	@Override
+	public long getWord(int value) {
+		long from = (long)value - offset;
+		// a domain without words has nothing to read, not even for a window reaching into it from below
+		if (length == 0 || from <= -64 || from >= ((long)length << 6)) return 0;
+		long[] words = store.words;
+		if (from < 0) return words[start] << -from;
+		int w = (int)(from >>> 6);
+		int shift = (int)(from & 63);
+		long word = words[start + w] >>> shift;
+		// the upper bits come from the next word, unless the window is aligned
+		if (shift != 0 && w + 1 < length) word |= words[start + w + 1] << (64 - shift);
+		return word;
+	}
+
+	/**
+	 * @see Domain#removeValue(int)
+	 */
+	@Override
+	protected boolean removeValue(int value) {
+		if (!contains(value)) return false;
+		int i = value - offset;
+		store.words[start + (i >>> 6)] &= ~(1L << i);
+		return true;
+	}
+
+	/**
+	 * @see Domain#restoreValue(int)
+	 */
+	@Override
+	protected void restoreValue(int value) {
+		int i = value - offset;
+		store.words[start + (i >>> 6)] |= 1L << i;
+	}
+
+	/**
+	 * @see Domain#nextValue(int)
+	 */
+	@Override
+	public int nextValue(int value) {
+		long from = (long)value - offset + 1;
+		if (from < 0) from = 0;
+		if (from >= ((long)length << 6)) return NO_VALUE;
+		long[] words = store.words;
+		int w = (int)(from >>> 6);
+		long word = words[start + w] & (-1L << from);
+		while (true) {
+			if (word != 0) return offset + (w << 6) + Long.numberOfTrailingZeros(word);
+			if (++w == length) return NO_VALUE;
+			word = words[start + w];
+		}
+	}
+
+	/**
+	 * @see Domain#previousValue(int)
+	 */
+	@Override
+	protected int previousValue(int value) {
+		long to = (long)value - offset - 1;
+		if (to >= ((long)length << 6)) to = ((long)length << 6) - 1;
+		if (to < 0) return NO_VALUE;
+		long[] words = store.words;
+		int w = (int)(to >>> 6);
+		long word = words[start + w] & (-1L >>> (63 - (to & 63)));
+		while (true) {
+			if (word != 0) return offset + (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+			if (--w < 0) return NO_VALUE;
+			word = words[start + w];
+		}
+	}
+	
+}
@@ -0,0 +1,335 @@
+package straitjacket.domains;
+
+import java.util.Arrays;
+
+import straitjacket.Domain;
+
+/** 
+ * A domain kept as a sparse set: the values are stored in a dense array, whose first 
+ * size entries are the possible values, and a position index maps each value to its 
+ * place in the dense array. Removing a value swaps it behind the size marker, so 
+ * removal is O(1) and the removed values stay where they are. Instead of recording 
+ * every removed value on the trail, the domain saves its size (and bounds) once per 
+ * level, so restoring it when backtracking means resetting that one integer.
+ * The values are not ordered, which makes nextValue(int) linear in the size of the domain.
+ * The iteration in no particular order (see Domain.firstCursor()) walks the dense array instead,
+ * from its end to its start, so a removal only swaps a visited value into the position just visited.
+ */
+public class SparseSetDomain extends Domain {
+	
+	/**
+	 * the value represented by position 0 of the index
+	 */
+	private final int offset;
+	
+	/**
+	 * dense[0..limit) are the possible values, dense[limit..) the removed ones
+	 */
+	private final int[] dense;
+	
+	/**
+	 * index[v-offset] is the position of v in dense or -1 if v never was a value
+	 */
+	private final int[] index;
+	
+	/**
+	 * the number of possible values, i.e. the size marker of the dense array
+	 */
+	private int limit;
+	
+	/**
+	 * the saved states, one per level the domain was changed on
+	 */
+	private int[] savedLimits = new int[8];
+	private int[] savedMins = new int[8];
+	private int[] savedMaxs = new int[8];
+	private int[] savedStamps = new int[8];
+	private int saved = 0;
+	
+	/**
+	 * Define the domain as a range containing value from [lb, ub]
+	 * @param lb lower bound of the range
+	 * @param ub upper bound of the range
+	 */
+	public SparseSetDomain (int lb, int ub) {
+		offset = lb;
+		int span = lb <= ub ? ub - lb + 1 : 0;
+		dense = new int[span];
+		index = new int[span];
+		for (int i = 0; i < span; i++) {
+			dense[i] = lb + i;
+			index[i] = i;
+		}
+		limit = span;
+		initialize(limit);
+	}
+	
+	/** 
+	 * Creates a new Domain with the values of elements.
+	 * @param elements the list of possible values 
+	 */	
+	public SparseSetDomain (int[] elements) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i : elements) {
+			min = Math.min(min, i);
+			max = Math.max(max, i);
+		}
+		offset = elements.length > 0 ? min : 0;
+		int span = elements.length > 0 ? max - min + 1 : 0;
+		index = new int[span];
+		Arrays.fill(index, -1);
+		int[] values = new int[elements.length];
+		limit = 0;
+		for (int i : elements) {
+			if (index[i - offset] >= 0) continue; // duplicate value
+			index[i - offset] = limit;
+			values[limit++] = i;
+		}
+		dense = Arrays.copyOf(values, limit);
+		initialize(limit);
+	}
+
+	/**
+	 * Creates a copy of the given domain, without its saved states
+	 * @param other the domain to copy
+	 */
+	private SparseSetDomain (SparseSetDomain other) {
+		offset = other.offset;
+		dense = other.dense.clone();
+		index = other.index.clone();
+		limit = other.limit;
+		initialize(limit);
+	}
+	
+	/**
+	 * @see Domain#copy(DomainStore)
+	 */
+	@Override
+	public Domain copy(DomainStore store) {
+		return new SparseSetDomain(this);
+	}
+	
+	/**
+	 * @see Domain#contains(int)
+	 */
+	@Override
+	public boolean contains(int value) {
+		long i = (long)value - offset;
+		if (i < 0 || i >= index.length) return false;
+		int position = index[(int)i];
+		return position >= 0 && position < limit;
+	}
+
+	/**
+	 * @see Domain#removeValue(int)
+	 */
+	@Override
+	protected boolean removeValue(int value) {
+		if (!contains(value)) return false;
+		limit--;
+		swap(index[value - offset], limit);
+		return true;
+	}
+
+	/**
+	 * @see Domain#restoreValue(int)
+	 */
+	@Override
+	protected void restoreValue(int value) {
+		// every removed value lies behind the marker, so moving it right 
+		// in front of the marker and advancing the marker brings it back
+		swap(index[value - offset], limit);
+		limit++;
+	}
+	
+	/**
+	 * Exchanges the values at the given positions of the dense array
+	 */
+	private void swap(int i, int j) {
+		int vi = dense[i];
+		int vj = dense[j];
+		dense[i] = vj;
+		dense[j] = vi;
+		index[vj - offset] = i;
+		index[vi - offset] = j;
+	}
+
+	/**
+	 * Saves the size marker and the bounds on the first removal of a level,
+	 * later removals on the same level need not be recorded at all.
+	 * @see Domain#trailRemoval(int)
+	 */
+	@Override
+	protected void trailRemoval(int value) {
+		// the value is already behind the marker, the cached size and bounds are not updated yet
+		saveState(limit + 1);
+	}
+	
+	/**
+	 * Saves the given size marker and the cached bounds, unless the state has been saved on this level already
+	 * @param savedLimit the size marker before the removals of this level
+	 */
+	private void saveState(int savedLimit) {
+		int stamp = getTrailStamp();
+		if (stamp == 0 || (saved > 0 && savedStamps[saved-1] == stamp)) return;
+		if (saved == savedLimits.length) {
+			savedLimits = Arrays.copyOf(savedLimits, 2 * saved);
+			savedMins = Arrays.copyOf(savedMins, 2 * saved);
+			savedMaxs = Arrays.copyOf(savedMaxs, 2 * saved);
+			savedStamps = Arrays.copyOf(savedStamps, 2 * saved);
+		}
+		savedLimits[saved] = savedLimit;
+		savedMins[saved] = min();
+		savedMaxs[saved] = max();
+		savedStamps[saved] = stamp;
+		saved++;
+		recordOnTrail(saved);
+	}
+
+	/**
+	 * Restores the state saved on the level that is left.
+	 * @see Domain#restore(int)
+	 */
+	@Override
+	protected void restore(int data) {
+		saved--;
+		limit = savedLimits[saved];
+		restoreState(limit, savedMins[saved], savedMaxs[saved]);
+	}
+
+	/**
+	 * Moves all values below the given one behind the marker in one pass over the dense array
+	 * @see Domain#removeBelow(int)
+	 */
+	@Override
+	public boolean removeBelow(int value) {
+		if (limit == 0 || min() >= value) return false;
+		saveState(limit);
+		int newMin = NO_VALUE;
+		int newMax = Integer.MIN_VALUE;
+		for (int i = limit - 1; i >= 0; i--) {
+			int v = dense[i];
+			if (v < value) {
+				swap(i, --limit);
+			} else {
+				if (v < newMin) newMin = v;
+				if (v > newMax) newMax = v;
+			}
+		}
+		restoreState(limit, newMin, newMax);
+		return true;
+	}
+	
+	/**
+	 * Moves all values above the given one behind the marker in one pass over the dense array
+	 * @see Domain#removeAbove(int)
+	 */
+	@Override
+	public boolean removeAbove(int value) {
+		if (limit == 0 || max() <= value) return false;
+		saveState(limit);
+		int newMin = NO_VALUE;
+		int newMax = Integer.MIN_VALUE;
+		for (int i = limit - 1; i >= 0; i--) {
+			int v = dense[i];
+			if (v > value) {
+				swap(i, --limit);
+			} else {
+				if (v < newMin) newMin = v;
+				if (v > newMax) newMax = v;
+			}
+		}
+		restoreState(limit, newMin, newMax);
+		return true;
+	}
+	
+	/**
+	 * Moves the marker to the start of the dense array, the values stay where they are
+	 * @see Domain#clear()
+	 */
+	@Override
+	public void clear() {
+		if (limit == 0) return;
+		saveState(limit);
+		limit = 0;
+		restoreState(0, NO_VALUE, Integer.MIN_VALUE);
+	}
+
+	/**
+	 * @see Domain#nextValue(int)
+	 */
+	@Override
+	public int nextValue(int value) {
+		int next = NO_VALUE;
+		for (int i = 0; i < limit; i++) {
+			if (dense[i] > value && dense[i] < next) next = dense[i];
+		}
+		return next;
+	}
+
+	/**
+	 * @see Domain#previousValue(int)
+	 */
+	@Override
+	protected int previousValue(int value) {
+		int previous = Integer.MIN_VALUE;
+		for (int i = 0; i < limit; i++) {
+			if (dense[i] < value && dense[i] > previous) previous = dense[i];
+		}
+		return previous == Integer.MIN_VALUE ? NO_VALUE : previous;
+	}
+	
+	/**
+	 * Starts at the last possible value of the dense array
+	 * @see Domain#firstCursor()
+	 */
+	@Override
+	public int firstCursor() {
+		return limit > 0 ? limit - 1 : NO_VALUE;
+	}
+	
+	/**
+	 * Moves to the position before, the values behind it have been visited already
+	 * @see Domain#nextCursor(int)
+	 */
+	@Override
+	public int nextCursor(int cursor) {
+		return cursor > 0 ? cursor - 1 : NO_VALUE;
+	}
+	
+	/**
+	 * @see Domain#valueAt(int)
+	 */
+	@Override
+	public int valueAt(int cursor) {
+		return dense[cursor];
+	}
+	
+	/**
+	 * Collects the word from the dense array, in time proportional to the size of the domain
+	 * @see Domain#getWord(int)
+	 */
+	@Override
+	public long getWord(int value) {
+		long word = 0;
+		for (int i = 0; i < limit; i++) {
+			long bit = (long)dense[i] - value;
+			if (bit >= 0 && bit < 64) word |= 1L << bit;
+		}
+		return word;
+	}
+	
+	/**
+	 * Copies the values from the dense array, so this takes time proportional
+	 * to the size of the domain (plus sorting), not to its largest value.
+	 * @see Domain#validToArray()
+	 */
+	@Override
+	public int[] validToArray() {
+		int[] output = Arrays.copyOf(dense, limit);
+		Arrays.sort(output);
+		return output;
+	}
+	
+}
@@ -0,0 +1,127 @@
+package straitjacket.domains;
+
+import straitjacket.Domain;
+
+/** 
+ * A domain for the values 0 to 63, that keeps its values as the bits of a single long.
+ * Every operation on it is a constant number of bit operations, e.g. Long.bitCount
+ * for the initial size and Long.numberOfTrailingZeros for the next value. 
+ */
+public class WordDomain extends Domain {
+	
+	/**
+	 * the number of values a WordDomain can hold, all values have to be lower than this
+	 */
+	public static final int CAPACITY = 64;
+	
+	/**
+	 * bit i is set iff i is a possible value
+	 */
+	private long word;
+	
+	/** 
+	 * Creates a new empty Domain. So a Variable with this Domain has no possible allocation.  
+	 */
+	public WordDomain () {
+		word = 0L; 
+		initialize(0);
+	}
+	
+	/** 
+	 * Creates a new Domain with the values of elements.
+	 * @param elements the list of possible values, each of them in [0, CAPACITY)
+	 */	
+	public WordDomain (int[] elements) {
+		for (int i : elements) {
+			if (i < 0 || i >= CAPACITY) throw new IllegalArgumentException("A WordDomain can't hold the value " + i);
+			word |= 1L << i;
+		}
+		initialize(Long.bitCount(word));
+	}
+	
+	/**
+	 * Define the domain as a range containing value from [lb, ub]
+	 * @param lb lower bound of the range, at least 0
+	 * @param ub upper bound of the range, lower than CAPACITY
+	 */
+	public WordDomain (int lb, int ub) {
+		if (lb > ub) word = 0L;
+		else if (lb < 0 || ub >= CAPACITY) throw new IllegalArgumentException("A WordDomain can't hold the range [" + lb + "," + ub + "]");
+		else word = (-1L >>> (CAPACITY - 1 - ub)) & (-1L << lb);
+		initialize(Long.bitCount(word));
+	}
+
+	/**
+	 * Creates a copy of the given domain
+	 * @param other the domain to copy
+	 */
+	private WordDomain (WordDomain other) {
+		word = other.word;
+		initialize(other.size());
+	}
+	
+	/**
+	 * @see Domain#copy(DomainStore)
+	 */
+	@Override
+	public Domain copy(DomainStore store) {
+		return new WordDomain(this);
+	}
+	
+	/**
+	 * @see Domain#contains(int)
+	 */
+	@Override
+	public boolean contains(int value) {
+		return value >= 0 && value < CAPACITY && (word & (1L << value)) != 0;
+	}
+
+	/**
+	 * @see Domain#getWord(int)
+	 */
+	@Override
+	public long getWord(int value) {
+		if (value <= -CAPACITY || value >= CAPACITY) return 0;
+		return value >= 0 ? word >>> value : word << -value;
+	}
+
+	/**
+	 * @see Domain#removeValue(int)
+	 */
+	@Override
+	protected boolean removeValue(int value) {
+		if (!contains(value)) return false;
+		word &= ~(1L << value);
+		return true;
+	}
+
+	/**
+	 * @see Domain#restoreValue(int)
+	 */
+	@Override
+	protected void restoreValue(int value) {
+		word |= 1L << value;
+	}
+
+	/**
+	 * @see Domain#nextValue(int)
+	 */
+	@Override
+	public int nextValue(int value) {
+		if (value < 0) return word == 0 ? NO_VALUE : Long.numberOfTrailingZeros(word);
+		if (value >= CAPACITY - 1) return NO_VALUE;
+		long rest = word & (-1L << (value + 1));
+		return rest == 0 ? NO_VALUE : Long.numberOfTrailingZeros(rest);
+	}
+
+	/**
+	 * @see Domain#previousValue(int)
+	 */
+	@Override
+	protected int previousValue(int value) {
+		if (value <= 0) return NO_VALUE;
+		long rest = value >= CAPACITY ? word : word & ((1L << value) - 1);
+		return rest == 0 ? NO_VALUE : CAPACITY - 1 - Long.numberOfLeadingZeros(rest);
+	}
+	
+}
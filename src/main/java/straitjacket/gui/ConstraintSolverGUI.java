@@ -9,6 +9,7 @@ package straitjacket.gui;
 import straitjacket.ArcConsistency;
 import straitjacket.Backtracker;
 import straitjacket.ConstraintSet;
+import straitjacket.SolverState;
 import straitjacket.Variable;
 import straitjacket.VariableNameExistsException;
 import straitjacket.constraints.AllDifferentConstraint;
@@ -374,21 +375,24 @@ public class ConstraintSolverGUI extends javax.swing.JFrame {
         
         System.out.println("Solving using " + strat + " strategy...\n" + cs);
         
+        // the domains and values of this solve
+        SolverState state = new SolverState(cs);
+        
         // take the time
         long overallTime = System.currentTimeMillis();
                 
         // initial AC3 if wanted
         if ( this.initialAC3Checkbox.isSelected() ) {
             System.out.println("Initial AC3...\n");
-            ArcConsistency.ac3(cs);
-            System.out.println("" + cs);
+            ArcConsistency.ac3(state);
+            System.out.println("" + state);
         }
         
         // does the user want forward checking?
         if ( this.useForwardCheckingCheckbox.isSelected() ) {
-            Backtracker.backtrackSolveForwardCheck(cs,strat);
+            Backtracker.backtrackSolveForwardCheck(state,strat);
         } else {
-            Backtracker.backtrackSolve(cs,strat);
+            Backtracker.backtrackSolve(state,strat);
         }
         
         // take the time
@@ -396,16 +400,16 @@ public class ConstraintSolverGUI extends javax.swing.JFrame {
         
         // update iteration and time information
         this.timeOverallLabel.setText("" + overallTime + " ms");
-        this.iterationsLabel.setText("" + Backtracker.getIterations());
-        this.timeLabel.setText("" + Backtracker.getTime() + " ms");
+        this.iterationsLabel.setText("" + state.getIterations());
+        this.timeLabel.setText("" + state.getTime() + " ms");
         
         // update the sudokuMask with the solution
         for ( int i=0; i<fieldSize; i++) {
             for ( int j=0; j<fieldSize; j++) {
-                if ( cells[i][j].isTiedToValue() ) {
-                    ((SudokuPanel)this.sudokuMask).setValueAt(i,j,cells[i][j].getTiedValue());
+                if ( state.isTiedToValue(cells[i][j]) ) {
+                    ((SudokuPanel)this.sudokuMask).setValueAt(i,j,state.getTiedValue(cells[i][j]));
                 } else {
-                    int[] v = cells[i][j].getDomain().validToArray();
+                    int[] v = state.getDomain(cells[i][j]).validToArray();
                     if ( v.length > 1 ) {
                         // this should never happen... there should be a concrete
                         // variable assignment
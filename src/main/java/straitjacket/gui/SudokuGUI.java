@@ -134,20 +134,23 @@ public class SudokuGUI {
             for (Variable[] vars : cols) cs.add(new AllDifferentConstraint(vars));
 
 
+            // the domains and values of this solve
+            SolverState state = new SolverState(cs);
+
             // take the time
             long overallTime = System.currentTimeMillis();
 
             // initial AC3 if wanted
 //                    if ( this.initialAC3Checkbox.isSelected() ) {
                 System.out.println("Initial AC3...\n");
-                ArcConsistency.ac3(cs);
-                System.out.println("" + cs);
+                ArcConsistency.ac3(state);
+                System.out.println("" + state);
 //                    }
 
             // does the user want forward checking?
 //                    if ( this.useForwardCheckingCheckbox.isSelected() ) {
             if (backtrack) {
-                Backtracker.backtrackSolveForwardCheck(cs, StrategyFactory.AvailableStrategies.FIRST_FAIL);
+                Backtracker.backtrackSolveForwardCheck(state, StrategyFactory.AvailableStrategies.FIRST_FAIL);
             }
 //                    } else {
 //                        Backtracker.backtrackSolve(cs,strat);
@@ -163,10 +166,10 @@ public class SudokuGUI {
                         for (int col = 0; col < SIZE; col++) {
 
                             Variable variable = variables[blockRow][blockCol][row][col];
-                            int[] ints = variable.getDomain().validToArray();
+                            int[] ints = state.getDomain(variable).validToArray();
                             JTextField textField = textFields[blockRow][blockCol][row][col];
-                            if (variable.isTiedToValue()) {
-                                Integer tiedValue = variable.getTiedValue();
+                            if (state.isTiedToValue(variable)) {
+                                int tiedValue = state.getTiedValue(variable);
                                 textField.setText("" + tiedValue);
                             } else if (ints.length == 1) {
                                 Integer tiedValue = ints[0];
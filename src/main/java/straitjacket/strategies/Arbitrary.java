@@ -2,7 +2,8 @@ package straitjacket.strategies;
 
 import java.util.Stack;
 
-import straitjacket.ConstraintSet;
+import straitjacket.CompiledModel;
+import straitjacket.SolverState;
 import straitjacket.Variable;
 
 
@@ -10,11 +11,13 @@ public class Arbitrary extends Strategy {
 
 	private final Stack<Variable> candidates;
 	
-	public Arbitrary(ConstraintSet cs) {
+	public Arbitrary(SolverState state) {
 		this.dequeued = new Stack<Variable>();
 		this.candidates = new Stack<Variable>();
-		for ( Variable v : cs.getVariables() ) {
-			this.candidates.push(v);
+		// pushed backwards, so the variables are taken in the order of their ids
+		CompiledModel model = state.getModel();
+		for ( int i = model.getNumberOfVariables() - 1; i >= 0; i-- ) {
+			this.candidates.push(model.getVariable(i));
 		}
 	}
 	
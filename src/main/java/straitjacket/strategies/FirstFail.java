@@ -2,27 +2,60 @@ package straitjacket.strategies;
 
 import java.util.*;
 
-import straitjacket.ConstraintSet;
+import straitjacket.CompiledModel;
+import straitjacket.SolverState;
 import straitjacket.Variable;
 
 
 public class FirstFail extends Strategy {
 
-	private final HashSet<Variable> candidates;
+	/**
+	 * all variables of the model, in the order of their ids 
+	 */
+	private final Variable[] candidates;
+	
+	/**
+	 * whether candidates[i] is on the stack already
+	 */
+	private final boolean[] taken;
+	
+	/**
+	 * the index of each variable in candidates, by the id of the variable
+	 */
+	private final int[] indexById;
+	
+	/**
+	 * the number of candidates not taken yet
+	 */
+	private int left;
+	
+	/**
+	 * the state whose domains decide which variable is taken next
+	 */
+	private final SolverState state;
 	
 	private class FFComparator implements java.util.Comparator<Variable> {
 
 		public int compare(Variable arg0, Variable arg1) {
-			return ((Integer)arg0.getDomain().cardinality()).compareTo(arg1.getDomain().cardinality());
+			return ((Integer)state.getDomain(arg0).size()).compareTo(state.getDomain(arg1).size());
 		}
 		
 	}
 	/**
 	 * Builds an iterator for a first fail strategy.
-	 * @param cs
+	 * @param state the state of the search
 	 */
-	public FirstFail(ConstraintSet cs) {
-        this.candidates = new HashSet<Variable>(cs.getVariables());
+	public FirstFail(SolverState state) {
+		CompiledModel model = state.getModel();
+		this.state = state;
+		this.candidates = new Variable[model.getNumberOfVariables()];
+		this.taken = new boolean[candidates.length];
+		this.indexById = new int[state.getConstraintSet().getNumberOfVariableIds()];
+		for ( int i = 0; i < candidates.length; i++ ) {
+			candidates[i] = model.getVariable(i);
+			indexById[candidates[i].getId()] = i;
+		}
+		this.left = candidates.length;
 		this.dequeued = new Stack<Variable>();
 	}
 	
@@ -30,26 +63,24 @@ public class FirstFail extends Strategy {
 	 * @see Strategy#next()
 	 */
 	public Variable next() {
-		Variable minVar = null;
+		int min = -1;
 		int minSize = Integer.MAX_VALUE;
 		
-		for ( Variable v : this.candidates ) {
-			int size = v.getDomain().cardinality();
-			if ( size == 1 ) {
-				// abort immediately if size=1
-				this.dequeued.push(v);
-				this.candidates.remove(v);
-				return v;
-			}
-			else if ( size < minSize ) {
+		for ( int i = 0; i < candidates.length; i++ ) {
+			if ( taken[i] ) continue;
+			int size = state.getDomain(candidates[i]).size();
+			if ( size < minSize ) {
 				minSize = size;
-				minVar = v;
+				min = i;
+				// abort immediately if size=1
+				if ( size == 1 ) break;
 			}
 		}
 		
-		this.dequeued.push(minVar);
-		this.candidates.remove(minVar);
-		return minVar;
+		this.taken[min] = true;
+		this.left--;
+		this.dequeued.push(candidates[min]);
+		return candidates[min];
 	}
 
 	/**
@@ -58,7 +89,8 @@ public class FirstFail extends Strategy {
 	public Variable previous() {
 		// remove the current variable from the stack
 		// and reenque it 
-		this.candidates.add(this.dequeued.pop());
+		this.taken[indexById[this.dequeued.pop().getId()]] = false;
+		this.left++;
 		// the top of the stack is now the previous variable
 		// which we want to return
 		return this.dequeued.empty() ? null : this.dequeued.peek();
@@ -68,7 +100,7 @@ public class FirstFail extends Strategy {
 	 * @see Strategy#hasNext()
 	 */
 	public boolean hasNext() {
-		return ! this.candidates.isEmpty();
+		return this.left > 0;
 	}
 	
 }
@@ -1,14 +1,11 @@
 package straitjacket.strategies;
 
-import java.util.Collection;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 import java.util.Stack;
 
-import straitjacket.Constraint;
-import straitjacket.ConstraintSet;
+import straitjacket.CompiledModel;
+import straitjacket.SolverState;
 import straitjacket.Variable;
 
 
@@ -17,25 +14,26 @@ public class MostConstrained extends Strategy {
 	
 	class MCComparator implements java.util.Comparator<Variable> {
 
-		final Map<Variable,Integer> constraintCountByVariable;
+		final CompiledModel model;
 		
-		public MCComparator(ConstraintSet cs) {
-			Map<Variable,Collection<Constraint>> cBV = cs.getConstraintsByVariables();
-			this.constraintCountByVariable = new HashMap<Variable,Integer>();
-			for ( Variable v : cs.getVariables() ) {
-				this.constraintCountByVariable.put(v,cBV.get(v).size());
-			}
+		public MCComparator(CompiledModel model) {
+			this.model = model;
 		}
 		public int compare(Variable arg0, Variable arg1) {
-			return (this.constraintCountByVariable.get(arg1)).compareTo(this.constraintCountByVariable.get(arg0));
+			int count0 = this.model.getDegree(arg0);
+			int count1 = this.model.getDegree(arg1);
+			return count1 < count0 ? -1 : (count1 == count0 ? 0 : 1);
 		}
 		
 	}
 	
-	public MostConstrained(ConstraintSet cs) {
-		PriorityQueue<Variable> q = new PriorityQueue<Variable>(cs.getVariables().size(),new MCComparator(cs));
-		for ( Variable v : cs.getVariables() ) q.add(v);
-		this.candidates = new LinkedList<Variable>(q);
+	public MostConstrained(SolverState state) {
+		CompiledModel model = state.getModel();
+		Variable[] q = new Variable[model.getNumberOfVariables()];
+		for ( int i = 0; i < q.length; i++ ) q[i] = model.getVariable(i);
+		// the sort is stable, so variables with the same number of constraints stay in the order of their ids
+		Arrays.sort(q, new MCComparator(model));
+		this.candidates = new LinkedList<Variable>(Arrays.asList(q));
 		this.dequeued = new Stack<Variable>();
 	}
 	
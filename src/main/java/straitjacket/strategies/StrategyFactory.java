@@ -1,6 +1,6 @@
 package straitjacket.strategies;
 
-import straitjacket.ConstraintSet;
+import straitjacket.SolverState;
 
 public class StrategyFactory {
 	
@@ -12,7 +12,7 @@ public class StrategyFactory {
 		private final String name;
 		private final Class reprClass;
 		
-		static final Class[] parameterTypes = {ConstraintSet.class};
+		static final Class[] parameterTypes = {SolverState.class};
 		
 		AvailableStrategies(String name, Class c) {
 			this.name = name;
@@ -23,8 +23,8 @@ public class StrategyFactory {
 			return this.name;
 		}
 		
-		public Strategy instanciate(ConstraintSet cs) {
-			Object[] params = {cs};
+		public Strategy instanciate(SolverState state) {
+			Object[] params = {state};
 			try {
 				return (Strategy)this.reprClass.getConstructor(parameterTypes).newInstance(params);
 			} catch ( Exception e ) {